@@ -7,10 +7,13 @@ import android.os.Bundle;
 import android.widget.ImageView;
 import android.widget.TextView;
 
+import com.tzutalin.dlibtest.CaptureSession;
+import com.tzutalin.dlibtest.CaptureSessionStore;
 import com.tzutalin.dlibtest.R;
 import com.tzutalin.dlibtest.ResultProb;
 import com.tzutalin.dlibtest.ResultProbList;
 import com.tzutalin.dlibtest.TensorFlowClassifier;
+import com.tzutalin.dlibtest.VerificationEvidence;
 
 import static com.tzutalin.dlibtest.TensorFlowClassifier.HEIGHTS;
 import static com.tzutalin.dlibtest.TensorFlowClassifier.WIDTHS;
@@ -21,6 +24,7 @@ public class ResultActivity extends AppCompatActivity {
     private ImageView mLeftImageView;
     private ImageView mRightImageView;
     private TensorFlowClassifier classifier = TensorFlowClassifier.getInstance();
+    private long mSessionToken = CaptureSessionStore.NO_TOKEN;
 
 
     @Override
@@ -30,9 +34,21 @@ public class ResultActivity extends AppCompatActivity {
         initView();
 
         Intent intent = getIntent();
-        Bundle bundle = intent.getExtras();
-        ResultProbList resultProbList = classifier.Verification(bundle);
-        setResult(resultProbList);
+        mSessionToken = intent.getLongExtra(CaptureSessionStore.EXTRA_TOKEN, CaptureSessionStore.NO_TOKEN);
+        CaptureSession session = CaptureSessionStore.get(mSessionToken);
+        if (session == null) return;    // 프로세스가 재시작된 경우 등
+        ResultProbList resultProbList = classifier.Verification(session);
+        setResult(resultProbList, session);
+    }
+
+
+    @Override
+    protected void onDestroy() {
+        // 화면 회전이 아니라 정말 끝나는 경우에만 crop 을 놓아준다
+        if (isFinishing()) {
+            CaptureSessionStore.release(mSessionToken);
+        }
+        super.onDestroy();
     }
 
 
@@ -43,7 +59,7 @@ public class ResultActivity extends AppCompatActivity {
     }
 
 
-    private void setResult(ResultProbList resultProbList){
+    private void setResult(ResultProbList resultProbList, CaptureSession session){
 
         if(resultProbList == null) return;
 
@@ -60,6 +76,12 @@ public class ResultActivity extends AppCompatActivity {
             mRightImageView.setImageBitmap(tmpLeftBitmap);
             mLeftImageView.setImageBitmap(tmpRightBitmap);
 
+            // 촬영 중에 증거가 모자라 결정하지 못한 경우
+            if (session.getVerificationStatus() == VerificationEvidence.FAILED) {
+                mTextView.append("인식 실패");
+                return;
+            }
+
             float[] tempResult = resultProb.getProbResult();
 
             // 확률이 가장 큰 클래스 고르기
@@ -71,6 +93,10 @@ public class ResultActivity extends AppCompatActivity {
                     result = i;
                 }
             }
+            // 촬영 중에 결정이 났으면 누적된 증거로 고른 클래스를 쓴다
+            if (session.getVerificationStatus() == VerificationEvidence.DECIDED) {
+                result = session.getDecision();
+            }
 
             String sResult = null;
             if (result == 0) {
@@ -11,8 +11,8 @@ import android.widget.ImageView;
 import android.widget.TextView;
 
 import com.tzutalin.dlibtest.CameraActivity;
-import com.tzutalin.dlibtest.ParcelBitmap;
-import com.tzutalin.dlibtest.ParcelBitmapList;
+import com.tzutalin.dlibtest.CaptureSession;
+import com.tzutalin.dlibtest.CaptureSessionStore;
 import com.tzutalin.dlibtest.R;
 import com.tzutalin.dlibtest.ResultProb;
 import com.tzutalin.dlibtest.ResultProbList;
@@ -33,7 +33,7 @@ import static com.tzutalin.dlibtest.TensorFlowClassifier.WIDTHS;
 public class ResultTestActivity extends AppCompatActivity{
 
     Intent intent;
-    Bundle bundle;
+    long sessionToken;
 
     private ImageView rightLowImg;
     private ImageView leftLowImg;
@@ -56,7 +56,7 @@ public class ResultTestActivity extends AppCompatActivity{
         setContentView(R.layout.activity_result_test);
 
         intent = getIntent();
-        bundle = intent.getExtras();
+        sessionToken = intent.getLongExtra(CaptureSessionStore.EXTRA_TOKEN, CaptureSessionStore.NO_TOKEN);
 
         rightLowImg = (ImageView) findViewById(R.id.imgLowRight);
         leftLowImg = (ImageView) findViewById(R.id.imgLowLeft);
@@ -75,6 +75,16 @@ public class ResultTestActivity extends AppCompatActivity{
     }
 
 
+    @Override
+    protected void onDestroy() {
+        // 화면 회전이 아니라 정말 끝나는 경우에만 crop 을 놓아준다
+        if (isFinishing()) {
+            CaptureSessionStore.release(sessionToken);
+        }
+        super.onDestroy();
+    }
+
+
     /**
      * 버튼 이벤트를 처리하는 함수
      */
@@ -92,7 +102,9 @@ public class ResultTestActivity extends AppCompatActivity{
                 //startActivity(intent1);
 
             } else if (objectID == R.id.btnVerification) {
-                ResultProbList resultProbList = classifier.Verification(bundle);
+                CaptureSession session = CaptureSessionStore.get(sessionToken);
+                if (session == null) return;
+                ResultProbList resultProbList = classifier.Verification(session);
                 setResult(resultProbList);
             }
             //rightImg.setImageBitmap(bmpGrayScale);
@@ -173,7 +185,7 @@ public class ResultTestActivity extends AppCompatActivity{
             num++;
         }
 
-        for (int num2 = 0; num2 < 5; num2++) {
+        for (int num2 = 0; num2 < resultProbList.size(); num2++) {
 
             resultText.append(String.valueOf(num2) + ": \n");
 
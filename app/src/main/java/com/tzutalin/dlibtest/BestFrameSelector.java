@@ -0,0 +1,181 @@
+package com.tzutalin.dlibtest;
+
+/**
+ * Keeps the K best eye pairs seen during a collection, ranked by a combined quality score.
+ * The pairs live in a min-heap with the worst kept pair at the root, so a candidate is
+ * compared against it before anything is copied. All K + 1 pairs are allocated up front:
+ * the spare pair receives the next candidate and an evicted pair becomes the new spare.
+ * Crop buffers come from a {@link CropBufferPool} and go back to it as soon as their pair
+ * is evicted or the selection is reset.
+ * <p>
+ * Collection starts at the first candidate and is complete once K pairs are held and
+ * either the candidate budget or the time window (frame timestamps) is used up.
+ * Not thread safe; use it from the thread that produces the crops.
+ */
+public class BestFrameSelector {
+
+    private final EyeCropPair[] mHeap;
+    private final EyeCropPair[] mPairs;
+    private final CropBufferPool mBuffers;
+    private int mSize;
+    private int mNextUnused;
+    private EyeCropPair mSpare;
+
+    private final int mFrameBudget;
+    private final long mWindowNanos;
+    private int mCandidates;
+    private long mStartTimestamp;
+
+    /**
+     * @param k           number of pairs to keep
+     * @param frameBudget number of candidates to look at before completing
+     * @param windowMs    time after the first candidate before completing
+     * @param buffers     pool the crop buffers are taken from
+     */
+    public BestFrameSelector(int k, int frameBudget, long windowMs, CropBufferPool buffers) {
+        if (k <= 0) {
+            throw new IllegalArgumentException("k must be positive: " + k);
+        }
+        mHeap = new EyeCropPair[k];
+        mPairs = new EyeCropPair[k + 1];
+        for (int i = 0; i < mPairs.length; i++) {
+            mPairs[i] = new EyeCropPair();
+        }
+        mBuffers = buffers;
+        mFrameBudget = frameBudget;
+        mWindowNanos = windowMs * 1000000L;
+        reset();
+    }
+
+    /**
+     * Counts a candidate and returns the pair to fill with its crops through
+     * {@link EyeCropPair#fill} and the pool given to the constructor.
+     * @param timestampNanos frame timestamp, increasing
+     * @return the spare pair with score and timestamp set, or null if the candidate
+     *         would not make the top K and nothing needs to be copied
+     */
+    public EyeCropPair begin(double score, long timestampNanos) {
+        if (mCandidates == 0) {
+            mStartTimestamp = timestampNanos;
+        }
+        mCandidates++;
+        if (mSize == mHeap.length && score <= mHeap[0].score) {
+            return null;
+        }
+        mSpare.score = score;
+        mSpare.timestamp = timestampNanos;
+        return mSpare;
+    }
+
+    /**
+     * Inserts the pair returned by {@link #begin}, evicting the worst kept pair when full.
+     */
+    public void commit(EyeCropPair pair) {
+        if (pair != mSpare) {
+            throw new IllegalArgumentException("Not the pair returned by begin()");
+        }
+        if (mSize < mHeap.length) {
+            mHeap[mSize] = pair;
+            siftUp(mSize++);
+            mSpare = mPairs[mNextUnused++];
+        } else {
+            mSpare = mHeap[0];
+            mSpare.release(mBuffers);
+            mHeap[0] = pair;
+            siftDown(0);
+        }
+    }
+
+    /**
+     * @param timestampNanos timestamp of the current frame
+     */
+    public boolean isComplete(long timestampNanos) {
+        return mSize == mHeap.length
+                && (mCandidates >= mFrameBudget || timestampNanos - mStartTimestamp >= mWindowNanos);
+    }
+
+    public int size() {
+        return mSize;
+    }
+
+    public int getCapacity() {
+        return mHeap.length;
+    }
+
+    public int getCandidateCount() {
+        return mCandidates;
+    }
+
+    /**
+     * Copies the kept pairs, best first, into a new session for the result screens.
+     */
+    public CaptureSession toSession(String label) {
+        final EyeCropPair[] sorted = new EyeCropPair[mSize];
+        System.arraycopy(mHeap, 0, sorted, 0, mSize);
+        // K 가 작으므로 삽입 정렬 (내림차순)
+        for (int i = 1; i < sorted.length; i++) {
+            final EyeCropPair pair = sorted[i];
+            int j = i - 1;
+            while (j >= 0 && sorted[j].score < pair.score) {
+                sorted[j + 1] = sorted[j];
+                j--;
+            }
+            sorted[j + 1] = pair;
+        }
+
+        final CaptureSession session = new CaptureSession(sorted.length);
+        for (final EyeCropPair pair : sorted) {
+            session.add(pair, label);
+        }
+        return session;
+    }
+
+    /**
+     * Drops the kept pairs, releasing their crops, and starts a new collection.
+     */
+    public void reset() {
+        for (int i = 0; i < mHeap.length; i++) {
+            mHeap[i] = null;
+        }
+        for (final EyeCropPair pair : mPairs) {
+            pair.release(mBuffers);
+        }
+        mSize = 0;
+        mSpare = mPairs[0];
+        mNextUnused = 1;
+        mCandidates = 0;
+        mStartTimestamp = 0;
+    }
+
+    private void siftUp(int i) {
+        final EyeCropPair pair = mHeap[i];
+        while (i > 0) {
+            final int parent = (i - 1) / 2;
+            if (mHeap[parent].score <= pair.score) {
+                break;
+            }
+            mHeap[i] = mHeap[parent];
+            i = parent;
+        }
+        mHeap[i] = pair;
+    }
+
+    private void siftDown(int i) {
+        final EyeCropPair pair = mHeap[i];
+        while (true) {
+            int child = 2 * i + 1;
+            if (child >= mSize) {
+                break;
+            }
+            if (child + 1 < mSize && mHeap[child + 1].score < mHeap[child].score) {
+                child++;
+            }
+            if (pair.score <= mHeap[child].score) {
+                break;
+            }
+            mHeap[i] = mHeap[child];
+            i = child;
+        }
+        mHeap[i] = pair;
+    }
+}
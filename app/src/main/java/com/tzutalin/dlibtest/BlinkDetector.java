@@ -0,0 +1,103 @@
+package com.tzutalin.dlibtest;
+
+/**
+ * Detects a blink from per-frame eye aspect ratios: the EAR drops below a closed level
+ * and comes back above an open level within a time window. Samples are kept in a small
+ * primitive ring, so adding one does not allocate.
+ */
+public class BlinkDetector {
+
+    public static final float DEFAULT_CLOSED_EAR = 0.2f;
+    public static final float DEFAULT_OPEN_EAR = 0.25f;
+    public static final long DEFAULT_WINDOW_MS = 800;
+    private static final int CAPACITY = 32;
+
+    private final float[] mEar = new float[CAPACITY];
+    private final long[] mTimestamp = new long[CAPACITY];
+    private int mHead;     // next slot to write
+    private int mSize;
+
+    private float mClosedEar = DEFAULT_CLOSED_EAR;
+    private float mOpenEar = DEFAULT_OPEN_EAR;
+    private long mWindowNanos = DEFAULT_WINDOW_MS * 1000000L;
+
+    private boolean mBlinkDetected;
+    private int mBlinkCount;
+
+    /**
+     * @param closedEar EAR below which the eyes count as closed
+     * @param openEar   EAR above which the eyes count as open, at least closedEar
+     * @param windowMs  longest open-closed-open sequence that counts as a blink
+     */
+    public void setThresholds(float closedEar, float openEar, long windowMs) {
+        if (openEar < closedEar) {
+            throw new IllegalArgumentException("openEar < closedEar: " + openEar + " < " + closedEar);
+        }
+        mClosedEar = closedEar;
+        mOpenEar = openEar;
+        mWindowNanos = windowMs * 1000000L;
+    }
+
+    /**
+     * Adds the EAR of one frame.
+     * @param timestampNanos frame timestamp, increasing
+     * @return true if this sample completes a blink
+     */
+    public boolean add(float ear, long timestampNanos) {
+        mEar[mHead] = ear;
+        mTimestamp[mHead] = timestampNanos;
+        mHead = (mHead + 1) % CAPACITY;
+        if (mSize < CAPACITY) {
+            mSize++;
+        }
+
+        if (ear < mOpenEar || !findBlink(timestampNanos)) {
+            return false;
+        }
+        mBlinkDetected = true;
+        mBlinkCount++;
+        // a blink is counted once: start over from the current open sample
+        mSize = 1;
+        return true;
+    }
+
+    // walks back from the newest (open) sample: closed, then open again, all inside the window
+    private boolean findBlink(long now) {
+        boolean closed = false;
+        for (int i = 1; i < mSize; i++) {
+            final int index = (mHead - 1 - i + CAPACITY) % CAPACITY;
+            if (now - mTimestamp[index] > mWindowNanos) {
+                return false;
+            }
+            final float ear = mEar[index];
+            if (!closed) {
+                if (ear < mClosedEar) {
+                    closed = true;
+                } else if (ear >= mOpenEar) {
+                    // open -> open: the dip, if any, started after this sample
+                    return false;
+                }
+            } else if (ear >= mOpenEar) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return true once a blink was seen since the last {@link #reset()}
+     */
+    public boolean isBlinkDetected() {
+        return mBlinkDetected;
+    }
+
+    public int getBlinkCount() {
+        return mBlinkCount;
+    }
+
+    public void reset() {
+        mSize = 0;
+        mBlinkDetected = false;
+        mBlinkCount = 0;
+    }
+}
@@ -18,7 +18,6 @@ package com.tzutalin.dlibtest;
 
 import android.app.Activity;
 import android.content.Intent;
-import android.graphics.Bitmap;
 import android.net.Uri;
 import android.os.Build;
 import android.os.Bundle;
@@ -31,8 +30,6 @@ import com.hongbog.view.ResultActivity;
 import com.hongbog.view.ResultTestActivity;
 import com.hongbog.view.StateFragment;
 
-import java.util.ArrayList;
-
 import static com.tzutalin.dlibtest.MainActivity.ACTIVITY_FLOW_EXTRA;
 import static com.tzutalin.dlibtest.MainActivity.DEVELOP_MODE_EXTRA;
 import static com.tzutalin.dlibtest.MainActivity.VERIFY_EXTRA;
@@ -75,17 +72,8 @@ public class CameraActivity extends Activity {
    }
 
 
-    public void goMain(Bitmap bitmap_left[], Bitmap bitmap_right[]) {
-
-        ArrayList<ParcelBitmap> left_lst = new ArrayList<>();
-        ArrayList<ParcelBitmap> right_lst = new ArrayList<>();
+    public void goMain(CaptureSession session) {
 
-        for (int i = 0; i <5; i++) {
-            left_lst.add(new ParcelBitmap( bitmap_left[i] ));
-            right_lst.add(new ParcelBitmap( bitmap_right[i] ));
-        }
-
-        // 리스트에 이미지 넣기
         Intent intent = getIntent();
         String mode = intent.getStringExtra(ACTIVITY_FLOW_EXTRA);
 
@@ -101,12 +89,8 @@ public class CameraActivity extends Activity {
             return;
         }
 
-        Bundle bundle = new Bundle();
-
-        // 데이터 전달
-        bundle.putParcelableArrayList("LeftEyeList", left_lst);       // ("변수명", 넘기는 값)
-        bundle.putParcelableArrayList("RightEyeList", right_lst);       // ("변수명", 넘기는 값)
-        intent.putExtras(bundle);
+        // crop 은 메모리에 두고 token 만 전달 (Binder 로 Bitmap 을 복사하지 않는다)
+        intent.putExtra(CaptureSessionStore.EXTRA_TOKEN, CaptureSessionStore.register(session));
         startActivity(intent); // 명시적 인텐트(Activity 시작)
 
         long endTime = System.currentTimeMillis();
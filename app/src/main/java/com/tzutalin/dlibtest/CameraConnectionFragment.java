@@ -51,6 +51,7 @@ import android.support.annotation.Nullable;
 import android.support.v4.app.ActivityCompat;
 import android.util.Log;
 import android.util.Size;
+import android.util.SizeF;
 import android.util.SparseArray;
 import android.util.SparseIntArray;
 import android.view.LayoutInflater;
@@ -199,7 +200,8 @@ public class CameraConnectionFragment extends Fragment {
         mGgyroSensor = mSensorManager.getDefaultSensor(Sensor.TYPE_GYROSCOPE);
         mLightSensor = mSensorManager.getDefaultSensor(Sensor.TYPE_LIGHT);
         mSensorLis = new SensorListener();
-        mSensorManager.registerListener(mSensorLis, mGgyroSensor, SensorManager.SENSOR_DELAY_UI, sensorHandler);
+        // motion blur gate 가 프레임마다 최근 각속도를 읽으므로 자이로는 GAME 주기로 받는다
+        mSensorManager.registerListener(mSensorLis, mGgyroSensor, SensorManager.SENSOR_DELAY_GAME, sensorHandler);
         mSensorManager.registerListener(mSensorLis, mLightSensor, SensorManager.SENSOR_DELAY_UI, sensorHandler);
 
         Intent intent = getActivity().getIntent();
@@ -211,9 +213,40 @@ public class CameraConnectionFragment extends Fragment {
         }
 
         mOnGetPreviewListener.setHandler(new StateTextChangeHandler());
+        mOnGetPreviewListener.setOnCaptureCompleteListener(captureCompleteListener);
     }
 
 
+    // 품질 상위 crop 선택이 끝나면 (InferenceThread 에서 한 번만 호출) 카메라를 멈추고 결과 화면으로 넘긴다
+    private final OnGetImageListener.OnCaptureCompleteListener captureCompleteListener = new OnGetImageListener.OnCaptureCompleteListener() {
+        @Override
+        public void onCaptureComplete(final CaptureSession session) {
+            Log.i(TAG,"mOnGetPreviewListener: "+String.valueOf(session.size())+" crops selected");
+
+            final CameraCaptureSession cameraSession = captureSession;
+            if (cameraSession != null) {
+                try {
+                    cameraSession.stopRepeating();
+                } catch (final CameraAccessException | IllegalStateException e) {
+                    // 이미 닫힌 session
+                    Log.i(TAG, "stopRepeating failed", e);
+                }
+            }
+
+            final CameraActivity activity = (CameraActivity) getActivity();
+            if (activity == null) {
+                return;
+            }
+            activity.runOnUiThread(new Runnable() {
+                @Override
+                public void run() {
+                    activity.goMain(session);
+                }
+            });
+        }
+    };
+
+
     // TextureView에서 여러 라이프사이클 이벤트를 처리합니다.
     private final TextureView.SurfaceTextureListener surfaceTextureListener =  new TextureView.SurfaceTextureListener() {
         @Override
@@ -388,6 +421,13 @@ public class CameraConnectionFragment extends Fragment {
             }
 
 
+            // motion blur 예측용: 초점거리(mm)와 센서 폭(mm)
+            final float[] focalLengths = characteristics.get(CameraCharacteristics.LENS_INFO_AVAILABLE_FOCAL_LENGTHS);
+            final SizeF sensorSize = characteristics.get(CameraCharacteristics.SENSOR_INFO_PHYSICAL_SIZE);
+            if (focalLengths != null && focalLengths.length > 0 && sensorSize != null) {
+                mOnGetPreviewListener.setLensCharacteristics(focalLengths[0], sensorSize.getWidth());
+            }
+
             CameraConnectionFragment.this.cameraId = cameraId;
             return;
 
@@ -514,15 +554,7 @@ public class CameraConnectionFragment extends Fragment {
                 final TotalCaptureResult result) {
 
             super.onCaptureCompleted(session, request, result);
-
-            if (mOnGetPreviewListener.mNumCrop == 5){
-
-                Log.i(TAG,"mOnGetPreviewListener: "+String.valueOf(mOnGetPreviewListener.mNumCrop));
-
-                CameraActivity activity = (CameraActivity) getActivity();
-                activity.goMain(mOnGetPreviewListener.bitmap_left, mOnGetPreviewListener.bitmap_right);
-
-            }
+            mOnGetPreviewListener.onCaptureResult(result);
         }
     };
 
@@ -625,6 +657,9 @@ public class CameraConnectionFragment extends Fragment {
         //matrix.
 
         textureView.setTransform(matrix);
+
+        // 화면 크기/회전이 바뀌었으므로 preview 프레임 변환도 다시 계산하게 한다
+        mOnGetPreviewListener.onDisplayChanged();
     }
 
 
@@ -0,0 +1,160 @@
+package com.tzutalin.dlibtest;
+
+import android.graphics.Bitmap;
+
+/**
+ * Eye crops selected by one capture, best first, with their metadata. Handed from the
+ * camera to the result screens through {@link CaptureSessionStore}, so nothing is copied
+ * or parcelled on the way. Bitmaps are only built for the screens that display them.
+ */
+public class CaptureSession {
+
+    private final GrayFrame[] mLeft;
+    private final GrayFrame[] mRight;
+    private final CropMetadata[] mLeftMetadata;
+    private final CropMetadata[] mRightMetadata;
+    private final Bitmap[] mLeftBitmaps;
+    private final Bitmap[] mRightBitmaps;
+    private final float[][] mProbabilities;
+    private int mCount;
+    private int mVerificationStatus = VerificationEvidence.PENDING;
+    private int mDecision = -1;
+    private float mDecisionMargin;
+    private long mToken = CaptureSessionStore.NO_TOKEN;
+
+    public CaptureSession(int capacity) {
+        mLeft = new GrayFrame[capacity];
+        mRight = new GrayFrame[capacity];
+        mLeftMetadata = new CropMetadata[capacity];
+        mRightMetadata = new CropMetadata[capacity];
+        mLeftBitmaps = new Bitmap[capacity];
+        mRightBitmaps = new Bitmap[capacity];
+        mProbabilities = new float[capacity][];
+    }
+
+    /**
+     * Copies the crops and quality values of {@code pair} into the session.
+     */
+    void add(EyeCropPair pair, String label) {
+        if (mCount == mLeft.length) {
+            throw new IllegalStateException("Session is full: " + mCount);
+        }
+        mLeft[mCount] = copy(pair.left);
+        mRight[mCount] = copy(pair.right);
+        mLeftMetadata[mCount] = metadata(pair, label, CropMetadata.SIDE_LEFT, pair.blurLeft);
+        mRightMetadata[mCount] = metadata(pair, label, CropMetadata.SIDE_RIGHT, pair.blurRight);
+        mProbabilities[mCount] = pair.verified ? pair.probabilities.clone() : null;
+        mCount++;
+    }
+
+    public int size() {
+        return mCount;
+    }
+
+    public GrayFrame getLeftCrop(int i) {
+        return mLeft[check(i)];
+    }
+
+    public GrayFrame getRightCrop(int i) {
+        return mRight[check(i)];
+    }
+
+    public CropMetadata getLeftMetadata(int i) {
+        return mLeftMetadata[check(i)];
+    }
+
+    public CropMetadata getRightMetadata(int i) {
+        return mRightMetadata[check(i)];
+    }
+
+    /**
+     * @return the left crop as a Bitmap, built on first use
+     */
+    public synchronized Bitmap getLeftBitmap(int i) {
+        if (mLeftBitmaps[check(i)] == null) {
+            mLeftBitmaps[i] = mLeft[i].toBitmap();
+        }
+        return mLeftBitmaps[i];
+    }
+
+    /**
+     * @return the right crop as a Bitmap, built on first use
+     */
+    public synchronized Bitmap getRightBitmap(int i) {
+        if (mRightBitmaps[check(i)] == null) {
+            mRightBitmaps[i] = mRight[i].toBitmap();
+        }
+        return mRightBitmaps[i];
+    }
+
+    /**
+     * @return class scores computed while capturing, or null if the pair was not verified yet
+     */
+    public float[] getProbabilities(int i) {
+        return mProbabilities[check(i)];
+    }
+
+    /**
+     * Records the outcome of the streaming verification, see {@link VerificationEvidence}.
+     */
+    void setVerification(VerificationEvidence evidence) {
+        mVerificationStatus = evidence.getStatus();
+        mDecision = evidence.getStatus() == VerificationEvidence.DECIDED ? evidence.getBestClass() : -1;
+        mDecisionMargin = evidence.getMargin();
+    }
+
+    /**
+     * @return {@link VerificationEvidence#DECIDED}, {@link VerificationEvidence#FAILED}, or
+     *         {@link VerificationEvidence#PENDING} if the capture ended before a decision
+     */
+    public int getVerificationStatus() {
+        return mVerificationStatus;
+    }
+
+    /**
+     * @return the class decided while capturing, or -1
+     */
+    public int getDecision() {
+        return mDecision;
+    }
+
+    public float getDecisionMargin() {
+        return mDecisionMargin;
+    }
+
+    public long getToken() {
+        return mToken;
+    }
+
+    void setToken(long token) {
+        mToken = token;
+    }
+
+    private int check(int i) {
+        if (i < 0 || i >= mCount) {
+            throw new IndexOutOfBoundsException("crop " + i + " of " + mCount);
+        }
+        return i;
+    }
+
+    private static GrayFrame copy(GrayFrame src) {
+        final GrayFrame dst = new GrayFrame(src.getWidth(), src.getHeight());
+        dst.copyFrom(src, 0, 0, src.getWidth(), src.getHeight());
+        return dst;
+    }
+
+    private static CropMetadata metadata(EyeCropPair pair, String label, int side, double blur) {
+        final CropMetadata meta = new CropMetadata();
+        meta.timestamp = pair.timestamp;
+        meta.label = label;
+        meta.side = side;
+        meta.blur = (float) blur;
+        meta.ear = (float) pair.ear;
+        meta.score = (float) pair.score;
+        meta.yaw = pair.pose.yaw;
+        meta.pitch = pair.pose.pitch;
+        meta.roll = pair.pose.roll;
+        meta.setSensor(null);
+        return meta;
+    }
+}
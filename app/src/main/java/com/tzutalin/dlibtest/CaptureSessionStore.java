@@ -0,0 +1,54 @@
+package com.tzutalin.dlibtest;
+
+import android.util.Log;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Process-wide registry of {@link CaptureSession}s. The camera registers a session and
+ * puts only its token in the Intent ({@link #EXTRA_TOKEN}); the result screen looks the
+ * session up and releases it when it finishes. At most {@link #MAX_SESSIONS} sessions are
+ * kept, the oldest being dropped, so a screen that never releases cannot leak captures.
+ * A token does not survive the process; screens must handle {@link #get} returning null.
+ */
+public final class CaptureSessionStore {
+
+    private static final String TAG = "CaptureSessionStore";
+
+    public static final String EXTRA_TOKEN = "CaptureSessionToken";
+    public static final long NO_TOKEN = -1;
+    public static final int MAX_SESSIONS = 4;
+
+    private static final LinkedHashMap<Long, CaptureSession> sSessions = new LinkedHashMap<>();
+    private static long sNextToken = 1;
+
+    private CaptureSessionStore() {
+    }
+
+    /**
+     * @return the token to pass to the next screen
+     */
+    public static synchronized long register(CaptureSession session) {
+        final long token = sNextToken++;
+        session.setToken(token);
+        sSessions.put(token, session);
+        while (sSessions.size() > MAX_SESSIONS) {
+            final Map.Entry<Long, CaptureSession> oldest = sSessions.entrySet().iterator().next();
+            Log.w(TAG, "dropping unreleased session " + oldest.getKey());
+            sSessions.remove(oldest.getKey());
+        }
+        return token;
+    }
+
+    /**
+     * @return the session, or null if it was released, dropped or belongs to an earlier process
+     */
+    public static synchronized CaptureSession get(long token) {
+        return sSessions.get(token);
+    }
+
+    public static synchronized void release(long token) {
+        sSessions.remove(token);
+    }
+}
@@ -2,20 +2,12 @@ package com.tzutalin.dlibtest;
 
 import android.graphics.Bitmap;
 import android.graphics.Rect;
-import android.util.Log;
 
+import com.tzutalin.dlib.EyeRegions;
+import com.tzutalin.dlib.HeadPose;
+import com.tzutalin.dlib.HeadPoseEstimator;
 import com.tzutalin.dlib.VisionDetRet;
 
-import org.opencv.android.Utils;
-import org.opencv.core.Core;
-import org.opencv.core.Mat;
-import org.opencv.core.MatOfDouble;
-import org.opencv.imgproc.Imgproc;
-
-import static org.opencv.core.Core.BORDER_DEFAULT;
-import static org.opencv.core.CvType.CV_16S;
-import static org.opencv.core.CvType.CV_32F;
-
 /**
  * Created by jslee on 2018-07-19.
  */
@@ -25,23 +17,67 @@ public class CheckQuality {
     private static final String TAG = "CheckQuality";
     private Bitmap mBitmap;
     private VisionDetRet mRet;
-    public double mBlur_Bitmap;
     public double mBlur_R;
     public double mBlur_L;
+    // 눈 영역 품질 통계 (EyeQualityKernel)
+    public final EyeQuality mQualityLeft = new EyeQuality();
+    public final EyeQuality mQualityRight = new EyeQuality();
+    // eye aspect ratio (양쪽 평균): 감은 눈이면 작아진다
     public double mEar;
+    // 얼굴 방향 (yaw, pitch, roll), mRotat 은 roll
+    public final HeadPose mPose = new HeadPose();
     public double mRotat;
     public boolean imageScope;
     private boolean mAccept;
+    private boolean mEyesMeasured;
 
-    // Used to load the 'native-lib' library on application startup.
-    static {
-        System.loadLibrary("opencv_java3");
+    public CheckQuality() {
+        super();
     }
 
     public CheckQuality(Bitmap bitmap, VisionDetRet ret) {
         super();
+        set(bitmap, ret);
+    }
+
+    /**
+     * Points this instance at a new face so it can be reused for every face of every frame.
+     */
+    public void set(Bitmap bitmap, VisionDetRet ret) {
         this.mBitmap = bitmap;
         this.mRet = ret;
+        this.imageScope = false;
+        this.mAccept = false;
+        this.mBlur_L = 0;
+        this.mBlur_R = 0;
+        this.mEyesMeasured = false;
+        this.mEar = ret.hasEyeLandmarks() ? eyeAspectRatio(ret) : 0;
+        HeadPoseEstimator.estimate(ret, mPose);
+        this.mRotat = mPose.roll;
+    }
+
+    /**
+     * Eye aspect ratio averaged over both eyes (Soukupova and Cech, 2016):
+     * (|p2 - p6| + |p3 - p5|) / (2 |p1 - p4|) with p1 ~ p6 the six points of an eye.
+     * Around 0.3 for an open eye, close to 0 when it is shut.
+     */
+    public static double eyeAspectRatio(VisionDetRet ret){
+        return (eyeAspectRatio(ret, VisionDetRet.RIGHT_EYE_START)
+                + eyeAspectRatio(ret, VisionDetRet.LEFT_EYE_START)) / 2;
+    }
+
+    private static double eyeAspectRatio(VisionDetRet ret, int start){
+        double width = distance(ret, start, start + 3);
+        if (width == 0) {
+            return 0;
+        }
+        return (distance(ret, start + 1, start + 5) + distance(ret, start + 2, start + 4)) / (2 * width);
+    }
+
+    private static double distance(VisionDetRet ret, int a, int b){
+        int dx = ret.x(a) - ret.x(b);
+        int dy = ret.y(a) - ret.y(b);
+        return Math.sqrt(dx * dx + dy * dy);
     }
 
 
@@ -54,14 +90,11 @@ public class CheckQuality {
         bounds.right = mRet.getRight();
         bounds.bottom = mRet.getBottom();
         int faceWidth = (bounds.right - bounds.left);
-        Log.i(TAG,"Face width:" + String.valueOf(faceWidth));
 
         int width_L = mRet.mStartLeftX + mRet.mWidthLeft;
         int width_R = mRet.mStartRightX +mRet.mWidthRight;
         int height_L = mRet.mStartLeftY + mRet.mHightLeft;
         int height_R = mRet.mStartRightY +mRet.mHightRight;
-        Log.i(TAG,"Left size("+String.valueOf(width_L)+", "+String.valueOf(height_L)+")");
-        Log.i(TAG,"Right size("+String.valueOf(width_R)+", "+String.valueOf(height_R)+")");
 
         // 얼굴 크기가 너무 작거나 큰것 제외시킨다.
         if(faceWidth>200 && faceWidth<450) {
@@ -85,76 +118,76 @@ public class CheckQuality {
 
     }
 
-    public boolean isBlur(Bitmap bitCrop_L, Bitmap bitCrop_R){
+    /**
+     * Measures both eye crops directly on the gray frame, once per face.
+     * mBlur_L / mBlur_R are the standard deviation of the Laplacian, as before.
+     */
+    public void measureEyes(GrayFrame gray, EyeRegions.Box left, EyeRegions.Box right){
+        if (mEyesMeasured) {
+            return;
+        }
+        mEyesMeasured = true;
+
+        // blur : Laplacian 표준편차 (+ Tenengrad, 밝기, 대비, 포화 픽셀 수)
+        // 왼쪽눈
+        EyeQualityKernel.measure(gray.getPixels(), gray.getWidth(),
+                left.left, left.top, left.width(), left.height(), mQualityLeft);
+        this.mBlur_L = mQualityLeft.laplacianStdDev();
 
-        Mat matGray = new Mat();
-        MatOfDouble mean = new MatOfDouble();
-        MatOfDouble std = new MatOfDouble();
+        // 오른쪽눈
+        EyeQualityKernel.measure(gray.getPixels(), gray.getWidth(),
+                right.left, right.top, right.width(), right.height(), mQualityRight);
+        this.mBlur_R = mQualityRight.laplacianStdDev();
+    }
 
-        /** ------------------------------------------------------
-         *  제외할 조건들: blur, ear, rotation
-         *  --------------------------------------------------- **/
+    /**
+     * Exposure of both eye crops; {@link #measureEyes} must have run.
+     * @param maxSaturated largest fraction of pixels at the saturation level
+     */
+    public boolean isExposed(double minMean, double maxMean, double minContrast, double maxSaturated){
+        return isExposed(mQualityLeft, minMean, maxMean, minContrast, maxSaturated)
+                && isExposed(mQualityRight, minMean, maxMean, minContrast, maxSaturated);
+    }
 
-        // Bitmap -> Mat(matOri, matLeft, matRight)
-        // 전체 Mat: matOri
-        Mat matOri = new Mat (mBitmap.getWidth(), mBitmap.getHeight(), CV_32F);     // CV_8UC1
-        Utils.bitmapToMat(mBitmap, matOri);
-        // 왼쪽눈 Mat: matLeft
-        Mat matLeft = new Mat (bitCrop_L.getWidth(), bitCrop_L.getHeight(), CV_32F);  // CV_8UC1
-        Utils.bitmapToMat(bitCrop_L, matLeft);
-        // 오른쪽눈 Mat: matRight
-        Mat matRight = new Mat (bitCrop_R.getWidth(), bitCrop_R.getHeight(), CV_32F);
-        Utils.bitmapToMat(bitCrop_R, matRight);
+    private static boolean isExposed(EyeQuality eye, double minMean, double maxMean, double minContrast, double maxSaturated){
+        return eye.pixelCount > 0
+                && eye.mean >= minMean && eye.mean <= maxMean
+                && eye.contrast >= minContrast
+                && eye.saturatedCount <= eye.pixelCount * maxSaturated;
+    }
 
-        // blur : cv2.Laplacian(image, cv2.CV_64F).var()--------------------
-        // 전체
-        Imgproc.cvtColor(matOri, matGray, Imgproc.COLOR_BGR2GRAY);
-        // Imgproc.Laplacian(matLeftGray, matLeftGray, CV_16S); // -> Gray CV_16S
-        Imgproc.Laplacian(matGray, matGray, CV_16S, 3, 1, 0, BORDER_DEFAULT );
-        Core.meanStdDev(matGray, mean, std);
-        this.mBlur_Bitmap = std.get(0,0)[0];
-        Log.i(TAG, "Blur all:" + String.valueOf(this.mBlur_Bitmap));
+    /**
+     * Rejects off-angle faces by the pose estimated in {@link #set}.
+     */
+    public boolean isFrontal(float maxYaw, float maxPitch, float maxRoll){
+        return mPose.valid
+                && Math.abs(mPose.yaw) <= maxYaw
+                && Math.abs(mPose.pitch) <= maxPitch
+                && Math.abs(mPose.roll) <= maxRoll;
+    }
 
-        // 왼쪽눈
-        Imgproc.cvtColor(matLeft, matGray, Imgproc.COLOR_BGR2GRAY);
-        //Bitmap leftGray = .
-        //Utils.matToBitmap(matGray,leftGray);
-        // Imgproc.Laplacian(matLeftGray, matLeftGray, CV_16S); //-> Gray CV_16S
-        Imgproc.Laplacian(matGray, matGray, CV_16S, 3, 1, 0, BORDER_DEFAULT );
-        Core.meanStdDev(matGray, mean, std);
-        // Imgproc.Laplacian(matLeft,matLeft,CV_64F);//-> Color
-        // Core.meanStdDev(matLeft, mean, std);
-        // this.mBlur_L = Math.pow(std.get(0,0)[0], 2);  //double stdDev = std.get(0,0)[0];
-        this.mBlur_L = std.get(0,0)[0];  //double stdDev = std.get(0,0)[0];
-        Log.i(TAG,"Blur Left:" + String.valueOf(this.mBlur_L));
+    /**
+     * Rejects closed and half-closed eyes by the eye aspect ratio computed in {@link #set}.
+     */
+    public boolean isEyeOpen(double minEar){
+        return mEar >= minEar;
+    }
 
-        // 오른쪽눈
-        Imgproc.cvtColor(matLeft, matGray, Imgproc.COLOR_BGR2GRAY);
-        //Bitmap rightGray = null;
-        //Utils.matToBitmap(matGray,rightGray);
-        Imgproc.Laplacian(matGray, matGray, CV_16S); //-> Gray
-        Core.meanStdDev(matGray, mean, std);
-        // Imgproc.Laplacian(matLeft,matLeft,CV_64F);//-> Color
-        // Core.meanStdDev(matLeft, mean, std);
-        this.mBlur_R = std.get(0,0)[0];
-        // Math.pow(std.get(0,0)[0], 2);
-        // double stdDev = std.get(0,0)[0];
-        Log.i(TAG,"Blur Right: "+String.valueOf( this.mBlur_R));
-
-        boolean blur = false;
-        if(mBlur_L > 0 && mBlur_R > 0){
-            blur = true;
-        }
-        ///////////////
-        /*
-        String left = "left_g" + String.valueOf(mBlur_L);
-        String right = "right_g" + String.valueOf(mBlur_R);
-        ImageUtils.saveBitmap(rightGray, right);
-        ImageUtils.saveBitmap(leftGray, left);
-        */
-        ///////////////////////
-
-        return blur;
+    /**
+     * Sharpness of both eye crops; {@link #measureEyes} must have run.
+     */
+    public boolean isSharp(double minBlur){
+        return mBlur_L > minBlur && mBlur_R > minBlur;
+    }
+
+    /**
+     * Combined score used to rank accepted faces: the blurrier eye, discounted as the
+     * face turns away from the camera. {@link #measureEyes} must have run.
+     */
+    public double getScore(){
+        return Math.min(mBlur_L, mBlur_R)
+                * (1 - Math.min(1, Math.abs(mPose.yaw) / 90.0))
+                * (1 - Math.min(1, Math.abs(mPose.pitch) / 90.0));
     }
 
     public void setImageScope(boolean imageScope) {
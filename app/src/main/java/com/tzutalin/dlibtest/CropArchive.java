@@ -0,0 +1,188 @@
+package com.tzutalin.dlibtest;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+
+/**
+ * Append-only file of raw gray eye crops, read back by {@link CropArchiveReader}.
+ * <p>
+ * Little-endian. A {@link #HEADER_SIZE} byte file header is followed by records of
+ * {@code RECORD_HEADER_SIZE + maxWidth * maxHeight} bytes, so record i starts at
+ * {@code HEADER_SIZE + i * recordSize}.
+ * <pre>
+ * file header:   0 magic "EYEC", 4 version, 8 header size, 12 record header size,
+ *               16 max width, 20 max height, 24 record size, 28 reserved (ints)
+ * record header: 0 timestamp (long), 8 side (byte), 10 width, 12 height (shorts),
+ *               16 blur, ear, score, yaw, pitch, roll,
+ *               40 sensor roll, pitch, yaw, brightness, gyro x, y, z, accel x, y, z (floats),
+ *               80 label (16 bytes ASCII, zero padded)
+ * pixels:       width * height bytes row by row, the rest of the record is zero
+ * </pre>
+ * A record cut short by a crash is dropped when the archive is reopened.
+ */
+public class CropArchive {
+
+    public static final int MAGIC = 0x43455945; // "EYEC"
+    public static final int VERSION = 1;
+    public static final int HEADER_SIZE = 32;
+    public static final int RECORD_HEADER_SIZE = 96;
+    public static final int LABEL_SIZE = 16;
+
+    // file header
+    static final int H_MAGIC = 0;
+    static final int H_VERSION = 4;
+    static final int H_HEADER_SIZE = 8;
+    static final int H_RECORD_HEADER_SIZE = 12;
+    static final int H_MAX_WIDTH = 16;
+    static final int H_MAX_HEIGHT = 20;
+    static final int H_RECORD_SIZE = 24;
+
+    // record header
+    static final int R_TIMESTAMP = 0;
+    static final int R_SIDE = 8;
+    static final int R_WIDTH = 10;
+    static final int R_HEIGHT = 12;
+    static final int R_BLUR = 16;
+    static final int R_EAR = 20;
+    static final int R_SCORE = 24;
+    static final int R_YAW = 28;
+    static final int R_PITCH = 32;
+    static final int R_ROLL = 36;
+    static final int R_SENSOR = 40;
+    static final int R_LABEL = 80;
+
+    private static final byte[] ZEROS = new byte[4096];
+
+    private final RandomAccessFile mFile;
+    private final FileChannel mChannel;
+    private final int mMaxWidth;
+    private final int mMaxHeight;
+    private final int mRecordSize;
+    private final ByteBuffer mRecord;
+    private long mRecordCount;
+
+    /**
+     * Opens {@code file} for appending, writing the header if it is empty.
+     * @throws IOException if the file cannot be opened or holds an archive of another layout
+     */
+    public CropArchive(File file, int maxWidth, int maxHeight) throws IOException {
+        if (maxWidth <= 0 || maxHeight <= 0 || maxWidth > Short.MAX_VALUE || maxHeight > Short.MAX_VALUE) {
+            throw new IllegalArgumentException("Invalid crop size: " + maxWidth + "x" + maxHeight);
+        }
+        mMaxWidth = maxWidth;
+        mMaxHeight = maxHeight;
+        mRecordSize = RECORD_HEADER_SIZE + maxWidth * maxHeight;
+        mRecord = ByteBuffer.allocateDirect(mRecordSize).order(ByteOrder.LITTLE_ENDIAN);
+
+        mFile = new RandomAccessFile(file, "rw");
+        mChannel = mFile.getChannel();
+        try {
+            final ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            if (mChannel.size() == 0) {
+                header.putInt(H_MAGIC, MAGIC);
+                header.putInt(H_VERSION, VERSION);
+                header.putInt(H_HEADER_SIZE, HEADER_SIZE);
+                header.putInt(H_RECORD_HEADER_SIZE, RECORD_HEADER_SIZE);
+                header.putInt(H_MAX_WIDTH, maxWidth);
+                header.putInt(H_MAX_HEIGHT, maxHeight);
+                header.putInt(H_RECORD_SIZE, mRecordSize);
+                writeFully(header, 0);
+            } else {
+                while (header.hasRemaining()) {
+                    if (mChannel.read(header, header.position()) < 0) {
+                        throw new IOException("Truncated archive header: " + file);
+                    }
+                }
+                if (header.getInt(H_MAGIC) != MAGIC || header.getInt(H_VERSION) != VERSION
+                        || header.getInt(H_MAX_WIDTH) != maxWidth || header.getInt(H_MAX_HEIGHT) != maxHeight
+                        || header.getInt(H_RECORD_SIZE) != mRecordSize) {
+                    throw new IOException("Not a " + maxWidth + "x" + maxHeight + " crop archive: " + file);
+                }
+            }
+            mRecordCount = (mChannel.size() - HEADER_SIZE) / mRecordSize;
+            mChannel.truncate(HEADER_SIZE + mRecordCount * mRecordSize);
+        } catch (IOException e) {
+            mFile.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Appends one crop.
+     * @return false if the crop is larger than the archive's crop size
+     */
+    public boolean append(GrayFrame crop, CropMetadata meta) throws IOException {
+        final int width = crop.getWidth();
+        final int height = crop.getHeight();
+        if (width > mMaxWidth || height > mMaxHeight) {
+            return false;
+        }
+
+        final ByteBuffer record = mRecord;
+        record.clear();
+        record.putLong(R_TIMESTAMP, meta.timestamp);
+        record.put(R_SIDE, (byte) meta.side);
+        record.put(R_SIDE + 1, (byte) 0);
+        record.putShort(R_WIDTH, (short) width);
+        record.putShort(R_HEIGHT, (short) height);
+        record.putShort(R_HEIGHT + 2, (short) 0);
+        record.putFloat(R_BLUR, meta.blur);
+        record.putFloat(R_EAR, meta.ear);
+        record.putFloat(R_SCORE, meta.score);
+        record.putFloat(R_YAW, meta.yaw);
+        record.putFloat(R_PITCH, meta.pitch);
+        record.putFloat(R_ROLL, meta.roll);
+        record.putFloat(R_SENSOR, meta.sensorRoll);
+        record.putFloat(R_SENSOR + 4, meta.sensorPitch);
+        record.putFloat(R_SENSOR + 8, meta.sensorYaw);
+        record.putFloat(R_SENSOR + 12, meta.brightness);
+        record.putFloat(R_SENSOR + 16, meta.gyroX);
+        record.putFloat(R_SENSOR + 20, meta.gyroY);
+        record.putFloat(R_SENSOR + 24, meta.gyroZ);
+        record.putFloat(R_SENSOR + 28, meta.accelX);
+        record.putFloat(R_SENSOR + 32, meta.accelY);
+        record.putFloat(R_SENSOR + 36, meta.accelZ);
+        final String label = meta.label;
+        for (int i = 0; i < LABEL_SIZE; i++) {
+            final char c = label != null && i < label.length() ? label.charAt(i) : 0;
+            record.put(R_LABEL + i, c < 0x80 ? (byte) c : (byte) '?');
+        }
+
+        record.position(RECORD_HEADER_SIZE);
+        record.put(crop.getPixels(), 0, width * height);
+        // 이전 record 의 픽셀이 남지 않도록 나머지를 0 으로 채운다
+        while (record.hasRemaining()) {
+            record.put(ZEROS, 0, Math.min(ZEROS.length, record.remaining()));
+        }
+        record.flip();
+        writeFully(record, HEADER_SIZE + mRecordCount * mRecordSize);
+        mRecordCount++;
+        return true;
+    }
+
+    public long getRecordCount() {
+        return mRecordCount;
+    }
+
+    public int getMaxWidth() {
+        return mMaxWidth;
+    }
+
+    public int getMaxHeight() {
+        return mMaxHeight;
+    }
+
+    public void close() throws IOException {
+        mFile.close();
+    }
+
+    private void writeFully(ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            position += mChannel.write(buffer, position);
+        }
+    }
+}
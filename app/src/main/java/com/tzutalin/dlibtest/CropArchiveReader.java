@@ -0,0 +1,151 @@
+package com.tzutalin.dlibtest;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Random access to the records of a {@link CropArchive} through a read-only memory map.
+ * Nothing is decoded: the getters read the record headers in place and
+ * {@link #readPixels} copies the gray pixels out.
+ * Records appended after the reader was opened are not visible.
+ */
+public class CropArchiveReader {
+
+    private final MappedByteBuffer mBuffer;
+    private final int mMaxWidth;
+    private final int mMaxHeight;
+    private final int mRecordSize;
+    private final int mRecordCount;
+
+    public CropArchiveReader(File file) throws IOException {
+        final RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            final FileChannel channel = raf.getChannel();
+            if (channel.size() < CropArchive.HEADER_SIZE) {
+                throw new IOException("Truncated archive header: " + file);
+            }
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("Archive larger than 2 GB: " + file);
+            }
+            mBuffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        } finally {
+            // map 은 channel 을 닫아도 유효하다
+            raf.close();
+        }
+        mBuffer.order(ByteOrder.LITTLE_ENDIAN);
+
+        if (mBuffer.getInt(CropArchive.H_MAGIC) != CropArchive.MAGIC
+                || mBuffer.getInt(CropArchive.H_VERSION) != CropArchive.VERSION
+                || mBuffer.getInt(CropArchive.H_HEADER_SIZE) != CropArchive.HEADER_SIZE
+                || mBuffer.getInt(CropArchive.H_RECORD_HEADER_SIZE) != CropArchive.RECORD_HEADER_SIZE) {
+            throw new IOException("Not a crop archive: " + file);
+        }
+        mMaxWidth = mBuffer.getInt(CropArchive.H_MAX_WIDTH);
+        mMaxHeight = mBuffer.getInt(CropArchive.H_MAX_HEIGHT);
+        mRecordSize = mBuffer.getInt(CropArchive.H_RECORD_SIZE);
+        if (mMaxWidth <= 0 || mMaxHeight <= 0 || mRecordSize != CropArchive.RECORD_HEADER_SIZE + mMaxWidth * mMaxHeight) {
+            throw new IOException("Corrupt archive header: " + file);
+        }
+        // 쓰는 중이던 마지막 record 는 제외
+        mRecordCount = (mBuffer.capacity() - CropArchive.HEADER_SIZE) / mRecordSize;
+    }
+
+    public int size() {
+        return mRecordCount;
+    }
+
+    public int getMaxWidth() {
+        return mMaxWidth;
+    }
+
+    public int getMaxHeight() {
+        return mMaxHeight;
+    }
+
+    public long getTimestamp(int i) {
+        return mBuffer.getLong(offset(i) + CropArchive.R_TIMESTAMP);
+    }
+
+    /**
+     * @return {@link CropMetadata#SIDE_LEFT} or {@link CropMetadata#SIDE_RIGHT}
+     */
+    public int getSide(int i) {
+        return mBuffer.get(offset(i) + CropArchive.R_SIDE);
+    }
+
+    public int getWidth(int i) {
+        return mBuffer.getShort(offset(i) + CropArchive.R_WIDTH);
+    }
+
+    public int getHeight(int i) {
+        return mBuffer.getShort(offset(i) + CropArchive.R_HEIGHT);
+    }
+
+    public float getBlur(int i) {
+        return mBuffer.getFloat(offset(i) + CropArchive.R_BLUR);
+    }
+
+    public float getScore(int i) {
+        return mBuffer.getFloat(offset(i) + CropArchive.R_SCORE);
+    }
+
+    /**
+     * Reads the full header of record {@code i} into {@code out}.
+     */
+    public void readMetadata(int i, CropMetadata out) {
+        final int base = offset(i);
+        out.timestamp = mBuffer.getLong(base + CropArchive.R_TIMESTAMP);
+        out.side = mBuffer.get(base + CropArchive.R_SIDE);
+        out.blur = mBuffer.getFloat(base + CropArchive.R_BLUR);
+        out.ear = mBuffer.getFloat(base + CropArchive.R_EAR);
+        out.score = mBuffer.getFloat(base + CropArchive.R_SCORE);
+        out.yaw = mBuffer.getFloat(base + CropArchive.R_YAW);
+        out.pitch = mBuffer.getFloat(base + CropArchive.R_PITCH);
+        out.roll = mBuffer.getFloat(base + CropArchive.R_ROLL);
+        out.sensorRoll = mBuffer.getFloat(base + CropArchive.R_SENSOR);
+        out.sensorPitch = mBuffer.getFloat(base + CropArchive.R_SENSOR + 4);
+        out.sensorYaw = mBuffer.getFloat(base + CropArchive.R_SENSOR + 8);
+        out.brightness = mBuffer.getFloat(base + CropArchive.R_SENSOR + 12);
+        out.gyroX = mBuffer.getFloat(base + CropArchive.R_SENSOR + 16);
+        out.gyroY = mBuffer.getFloat(base + CropArchive.R_SENSOR + 20);
+        out.gyroZ = mBuffer.getFloat(base + CropArchive.R_SENSOR + 24);
+        out.accelX = mBuffer.getFloat(base + CropArchive.R_SENSOR + 28);
+        out.accelY = mBuffer.getFloat(base + CropArchive.R_SENSOR + 32);
+        out.accelZ = mBuffer.getFloat(base + CropArchive.R_SENSOR + 36);
+
+        final StringBuilder label = new StringBuilder(CropArchive.LABEL_SIZE);
+        for (int k = 0; k < CropArchive.LABEL_SIZE; k++) {
+            final byte c = mBuffer.get(base + CropArchive.R_LABEL + k);
+            if (c == 0) {
+                break;
+            }
+            label.append((char) c);
+        }
+        out.label = label.toString();
+    }
+
+    /**
+     * Copies the pixels of record {@code i} into {@code out}, reshaping it to the crop size.
+     */
+    public void readPixels(int i, GrayFrame out) {
+        final int base = offset(i) + CropArchive.RECORD_HEADER_SIZE;
+        final int width = getWidth(i);
+        final int height = getHeight(i);
+        out.reshape(width, height);
+        final ByteBuffer record = mBuffer.duplicate();
+        record.position(base);
+        record.get(out.getPixels(), 0, width * height);
+    }
+
+    private int offset(int i) {
+        if (i < 0 || i >= mRecordCount) {
+            throw new IndexOutOfBoundsException("record " + i + " of " + mRecordCount);
+        }
+        return CropArchive.HEADER_SIZE + i * mRecordSize;
+    }
+}
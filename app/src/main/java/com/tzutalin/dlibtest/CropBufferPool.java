@@ -0,0 +1,100 @@
+package com.tzutalin.dlibtest;
+
+import java.util.Locale;
+
+/**
+ * Pool of gray crop buffers bucketed by pixel capacity (powers of two), shared by the
+ * best-frame selection and the crop writer. A buffer belongs to whoever acquired it
+ * until it is released; after the first few faces every acquire is served from the pool.
+ * Thread safe.
+ */
+public class CropBufferPool {
+
+    // 1024 ~ 65536 픽셀 (눈 crop 은 최대 256x128)
+    private static final int MIN_BUCKET_SHIFT = 10;
+    private static final int MAX_BUCKET_SHIFT = 16;
+    private static final int DEFAULT_MAX_PER_BUCKET = 16;
+
+    private final GrayFrame[][] mFree = new GrayFrame[MAX_BUCKET_SHIFT - MIN_BUCKET_SHIFT + 1][];
+    private final int[] mFreeCount = new int[mFree.length];
+
+    private int mLive;
+    private int mMaxLive;
+    private long mAcquired;
+    private long mAllocated;
+
+    public CropBufferPool() {
+        this(DEFAULT_MAX_PER_BUCKET);
+    }
+
+    /**
+     * @param maxPerBucket buffers kept per bucket; further releases are left to the GC
+     */
+    public CropBufferPool(int maxPerBucket) {
+        for (int i = 0; i < mFree.length; i++) {
+            mFree[i] = new GrayFrame[maxPerBucket];
+        }
+    }
+
+    /**
+     * @return a buffer reshaped to {@code width} x {@code height}; its pixels are not cleared
+     */
+    public synchronized GrayFrame acquire(int width, int height) {
+        final int bucket = bucket(width * height);
+        GrayFrame frame = null;
+        if (bucket < mFree.length && mFreeCount[bucket] > 0) {
+            frame = mFree[bucket][--mFreeCount[bucket]];
+            mFree[bucket][mFreeCount[bucket]] = null;
+        }
+        if (frame == null) {
+            // 버킷 크기로 할당해 같은 버킷의 어떤 크기에도 재사용되게 한다
+            final int capacity = bucket < mFree.length ? 1 << (bucket + MIN_BUCKET_SHIFT) : width * height;
+            frame = new GrayFrame(capacity, 1);
+            mAllocated++;
+        }
+        frame.reshape(width, height);
+        mAcquired++;
+        mLive++;
+        mMaxLive = Math.max(mMaxLive, mLive);
+        return frame;
+    }
+
+    /**
+     * Returns a buffer obtained from {@link #acquire}. The caller must not use it afterwards.
+     */
+    public synchronized void release(GrayFrame frame) {
+        if (frame == null) {
+            return;
+        }
+        mLive--;
+        final int capacity = frame.getPixels().length;
+        final int bucket = bucket(capacity);
+        // 버킷 크기보다 작은 배열은 (외부에서 reshape 된 경우) 받지 않는다
+        if (bucket < mFree.length && capacity == 1 << (bucket + MIN_BUCKET_SHIFT)
+                && mFreeCount[bucket] < mFree[bucket].length) {
+            mFree[bucket][mFreeCount[bucket]++] = frame;
+        }
+    }
+
+    /**
+     * @return buffers acquired and not yet released
+     */
+    public synchronized int getLiveCount() {
+        return mLive;
+    }
+
+    public synchronized long getAllocatedCount() {
+        return mAllocated;
+    }
+
+    public synchronized String getSummary() {
+        return String.format(Locale.US, "crop buffers acquired: %d, allocated: %d, live: %d (max %d)",
+                mAcquired, mAllocated, mLive, mMaxLive);
+    }
+
+    // 2^(MIN_BUCKET_SHIFT + bucket) >= pixels 인 가장 작은 bucket
+    private static int bucket(int pixels) {
+        final int shift = 32 - Integer.numberOfLeadingZeros(Math.max(pixels, 1) - 1);
+        return Math.max(0, shift - MIN_BUCKET_SHIFT);
+    }
+}
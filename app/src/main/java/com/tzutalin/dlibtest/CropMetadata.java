@@ -0,0 +1,93 @@
+package com.tzutalin.dlibtest;
+
+/**
+ * Values stored with every crop in a {@link CropArchive} record.
+ */
+public class CropMetadata {
+
+    public static final int SIDE_LEFT = 0;
+    public static final int SIDE_RIGHT = 1;
+
+    /** frame timestamp, ns */
+    public long timestamp;
+    /** {@link #SIDE_LEFT} or {@link #SIDE_RIGHT} */
+    public int side;
+    /** user label, at most {@link CropArchive#LABEL_SIZE} ASCII characters are kept */
+    public String label;
+
+    // 품질 (CheckQuality)
+    public float blur;
+    public float ear;
+    public float score;
+    // 얼굴 방향 (HeadPose), degrees
+    public float yaw;
+    public float pitch;
+    public float roll;
+
+    // 단말 센서 (SensorDTO), 값이 없으면 NaN
+    public float sensorRoll;
+    public float sensorPitch;
+    public float sensorYaw;
+    public float brightness;
+    public float gyroX;
+    public float gyroY;
+    public float gyroZ;
+    public float accelX;
+    public float accelY;
+    public float accelZ;
+
+    public void set(CropMetadata other) {
+        timestamp = other.timestamp;
+        side = other.side;
+        label = other.label;
+        blur = other.blur;
+        ear = other.ear;
+        score = other.score;
+        yaw = other.yaw;
+        pitch = other.pitch;
+        roll = other.roll;
+        sensorRoll = other.sensorRoll;
+        sensorPitch = other.sensorPitch;
+        sensorYaw = other.sensorYaw;
+        brightness = other.brightness;
+        gyroX = other.gyroX;
+        gyroY = other.gyroY;
+        gyroZ = other.gyroZ;
+        accelX = other.accelX;
+        accelY = other.accelY;
+        accelZ = other.accelZ;
+    }
+
+    /**
+     * Copies the readings of {@code sensor}; readings it does not have are set to NaN.
+     */
+    public void setSensor(SensorDTO sensor) {
+        if (sensor == null) {
+            sensorRoll = sensorPitch = sensorYaw = brightness = Float.NaN;
+            gyroX = gyroY = gyroZ = accelX = accelY = accelZ = Float.NaN;
+            return;
+        }
+        sensorRoll = parse(sensor.getRoll());
+        sensorPitch = parse(sensor.getPitch());
+        sensorYaw = parse(sensor.getYaw());
+        brightness = parse(sensor.getBr());
+        gyroX = (float) sensor.getGyroX();
+        gyroY = (float) sensor.getGyroY();
+        gyroZ = (float) sensor.getGyroZ();
+        accelX = sensor.getAccelX();
+        accelY = sensor.getAccelY();
+        accelZ = sensor.getAccelZ();
+    }
+
+    private static float parse(String value) {
+        if (value == null) {
+            return Float.NaN;
+        }
+        try {
+            // SensorListener 는 기본 locale 로 포맷하므로 소수점이 쉼표일 수 있다
+            return Float.parseFloat(value.trim().replace(',', '.'));
+        } catch (NumberFormatException e) {
+            return Float.NaN;
+        }
+    }
+}
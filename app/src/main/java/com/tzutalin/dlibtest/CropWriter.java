@@ -0,0 +1,286 @@
+package com.tzutalin.dlibtest;
+
+import android.graphics.Bitmap;
+import android.util.Log;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Locale;
+
+/**
+ * Writes gray eye crops to disk on its own thread so that the inference thread never
+ * waits for the encode or for storage. Crops go to one PNG file each, or as raw records
+ * to a {@link CropArchive} when one is set.
+ * <p>
+ * {@link #submit} copies the crop into a {@link CropBufferPool} buffer queued in one of a
+ * fixed number of slots and returns. When every slot is pending, {@link #DROP_OLDEST}
+ * drops the oldest pending crop and {@link #DROP_NEWEST} drops the submitted one.
+ * The writer owns a buffer from the moment it takes it off the queue and releases it
+ * once written.
+ */
+public class CropWriter {
+
+    private static final String TAG = "CropWriter";
+
+    public static final int DROP_OLDEST = 0;
+    public static final int DROP_NEWEST = 1;
+
+    private final File mDirectory;
+    private final int mDropPolicy;
+    private final CropBufferPool mBuffers;
+
+    // 원형 큐: mHead 부터 mCount 개가 저장 대기 중
+    private final GrayFrame[] mSlots;
+    private final String[] mNames;
+    private final CropMetadata[] mMetadata;
+    private int mHead;
+    private int mCount;
+    private boolean mClosed;
+
+    // writer 스레드 전용
+    private CropMetadata mWritingMetadata = new CropMetadata();
+    private CropArchive mArchive;
+    private Bitmap mBitmap;
+    private int[] mArgb;
+    private boolean mDirectoryReady;
+
+    private Thread mThread;
+
+    // 통계 (mSlots 의 lock 으로 보호)
+    private long mSubmitted;
+    private long mWritten;
+    private long mDropped;
+    private long mFailed;
+    private int mMaxDepth;
+    private long mWriteNanos;
+    private long mMaxWriteNanos;
+
+    /**
+     * @param directory  directory the crops are written to; created on the first write
+     * @param capacity   number of crops that may wait to be written
+     * @param dropPolicy {@link #DROP_OLDEST} or {@link #DROP_NEWEST}
+     * @param buffers    pool the queued copies are taken from
+     */
+    public CropWriter(File directory, int capacity, int dropPolicy, CropBufferPool buffers) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity must be positive: " + capacity);
+        }
+        if (dropPolicy != DROP_OLDEST && dropPolicy != DROP_NEWEST) {
+            throw new IllegalArgumentException("Unknown drop policy: " + dropPolicy);
+        }
+        mDirectory = directory;
+        mDropPolicy = dropPolicy;
+        mBuffers = buffers;
+        mSlots = new GrayFrame[capacity];
+        mNames = new String[capacity];
+        mMetadata = new CropMetadata[capacity];
+        for (int i = 0; i < capacity; i++) {
+            mMetadata[i] = new CropMetadata();
+        }
+    }
+
+    /**
+     * Appends crops to {@code archive} instead of writing PNG files. The writer closes the
+     * archive in {@link #close}. Must be called before {@link #start}.
+     */
+    public synchronized void setArchive(CropArchive archive) {
+        if (mThread != null) {
+            throw new IllegalStateException("Writer already started");
+        }
+        mArchive = archive;
+    }
+
+    public synchronized void start() {
+        if (mThread != null) {
+            return;
+        }
+        mThread = new Thread(mWriterLoop, "CropWriter");
+        mThread.setPriority(Thread.MIN_PRIORITY);
+        mThread.start();
+    }
+
+    /**
+     * Queues a copy of {@code crop} and {@code meta}. PNG files are named "t" + name + ".png"
+     * like {@link ImageUtils#saveBitmap}; archive records carry the metadata instead.
+     * @param name PNG file name part, may be null when writing to an archive
+     * @return false if the crop was dropped
+     */
+    public boolean submit(GrayFrame crop, String name, CropMetadata meta) {
+        synchronized (mSlots) {
+            if (mClosed) {
+                return false;
+            }
+            mSubmitted++;
+            if (mCount == mSlots.length) {
+                mDropped++;
+                if (mDropPolicy == DROP_NEWEST) {
+                    return false;
+                }
+                mBuffers.release(mSlots[mHead]);
+                mSlots[mHead] = null;
+                mHead = (mHead + 1) % mSlots.length;
+                mCount--;
+            }
+            final int slot = (mHead + mCount) % mSlots.length;
+            final GrayFrame copy = mBuffers.acquire(crop.getWidth(), crop.getHeight());
+            copy.copyFrom(crop, 0, 0, crop.getWidth(), crop.getHeight());
+            mSlots[slot] = copy;
+            mNames[slot] = name;
+            mMetadata[slot].set(meta);
+            mCount++;
+            mMaxDepth = Math.max(mMaxDepth, mCount);
+            mSlots.notify();
+            return true;
+        }
+    }
+
+    /**
+     * Stops accepting crops, writes the ones already queued and stops the thread.
+     */
+    public void close() {
+        synchronized (mSlots) {
+            mClosed = true;
+            mSlots.notify();
+        }
+        final Thread thread;
+        synchronized (this) {
+            thread = mThread;
+            mThread = null;
+        }
+        if (thread != null) {
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        if (mArchive != null) {
+            try {
+                mArchive.close();
+            } catch (IOException e) {
+                Log.e(TAG, "Closing the archive failed", e);
+            }
+        }
+    }
+
+    private final Runnable mWriterLoop = new Runnable() {
+        @Override
+        public void run() {
+            while (true) {
+                final String name;
+                final GrayFrame crop;
+                synchronized (mSlots) {
+                    while (mCount == 0 && !mClosed) {
+                        try {
+                            mSlots.wait();
+                        } catch (InterruptedException e) {
+                            return;
+                        }
+                    }
+                    if (mCount == 0) {
+                        return;
+                    }
+                    // 버퍼를 꺼내 lock 밖에서 쓴다, 메타데이터는 writer 의 것과 바꾼다
+                    crop = mSlots[mHead];
+                    mSlots[mHead] = null;
+                    name = mNames[mHead];
+                    mNames[mHead] = null;
+                    final CropMetadata meta = mMetadata[mHead];
+                    mMetadata[mHead] = mWritingMetadata;
+                    mWritingMetadata = meta;
+                    mHead = (mHead + 1) % mSlots.length;
+                    mCount--;
+                }
+
+                final long start = System.nanoTime();
+                final boolean ok = mArchive != null
+                        ? append(crop, mWritingMetadata)
+                        : write(crop, name);
+                final long nanos = System.nanoTime() - start;
+                mBuffers.release(crop);
+                synchronized (mSlots) {
+                    if (ok) {
+                        mWritten++;
+                    } else {
+                        mFailed++;
+                    }
+                    mWriteNanos += nanos;
+                    mMaxWriteNanos = Math.max(mMaxWriteNanos, nanos);
+                }
+            }
+        }
+    };
+
+    private boolean append(GrayFrame crop, CropMetadata meta) {
+        try {
+            if (!mArchive.append(crop, meta)) {
+                Log.w(TAG, String.format("%dx%d crop does not fit the archive", crop.getWidth(), crop.getHeight()));
+                return false;
+            }
+            return true;
+        } catch (IOException e) {
+            Log.e(TAG, "Archive write failed", e);
+            return false;
+        }
+    }
+
+    private boolean write(GrayFrame crop, String name) {
+        if (!mDirectoryReady) {
+            mDirectoryReady = mDirectory.isDirectory() || mDirectory.mkdirs();
+            if (!mDirectoryReady) {
+                Log.e(TAG, "Make dir failed: " + mDirectory);
+                return false;
+            }
+        }
+
+        final int width = crop.getWidth();
+        final int height = crop.getHeight();
+        if (mBitmap == null || mBitmap.getAllocationByteCount() < width * height * 4) {
+            mBitmap = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+        } else if (mBitmap.getWidth() != width || mBitmap.getHeight() != height) {
+            mBitmap.reconfigure(width, height, Bitmap.Config.ARGB_8888);
+        }
+        if (mArgb == null || mArgb.length < width * height) {
+            mArgb = new int[width * height];
+        }
+        crop.writeTo(mBitmap, mArgb);
+
+        // FileOutputStream 은 기존 파일을 덮어쓰므로 delete 하지 않는다
+        final File file = new File(mDirectory, "t" + name + ".png");
+        FileOutputStream out = null;
+        try {
+            out = new FileOutputStream(file);
+            return mBitmap.compress(Bitmap.CompressFormat.PNG, 99, out);
+        } catch (IOException e) {
+            Log.e(TAG, "Write failed: " + file, e);
+            return false;
+        } finally {
+            if (out != null) {
+                try {
+                    out.close();
+                } catch (IOException ignored) {
+                }
+            }
+        }
+    }
+
+    /**
+     * @return number of crops waiting to be written
+     */
+    public int getQueueDepth() {
+        synchronized (mSlots) {
+            return mCount;
+        }
+    }
+
+    public String getSummary() {
+        synchronized (mSlots) {
+            final long done = mWritten + mFailed;
+            return String.format(Locale.US,
+                    "crops submitted: %d, written: %d, failed: %d, dropped: %d, max depth: %d/%d, write %.1f ms avg, %.1f ms max",
+                    mSubmitted, mWritten, mFailed, mDropped, mMaxDepth, mSlots.length,
+                    done == 0 ? 0.0 : mWriteNanos / 1e6 / done, mMaxWriteNanos / 1e6);
+        }
+    }
+}
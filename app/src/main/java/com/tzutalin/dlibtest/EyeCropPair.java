@@ -0,0 +1,54 @@
+package com.tzutalin.dlibtest;
+
+import com.tzutalin.dlib.EyeRegions;
+import com.tzutalin.dlib.HeadPose;
+
+/**
+ * Gray left/right eye crops of one accepted face with the quality values they were
+ * ranked by. Instances are pooled by {@link BestFrameSelector} and refilled in place;
+ * the crops are {@link CropBufferPool} buffers owned by the pair until {@link #release}.
+ */
+public class EyeCropPair {
+
+    public GrayFrame left;
+    public GrayFrame right;
+    public final HeadPose pose = new HeadPose();
+
+    public double score;
+    public long timestamp;
+    public double blurLeft;
+    public double blurRight;
+    public double ear;
+
+    // 촬영 중 verification 결과 (오른쪽 + 왼쪽 softmax 합), verified 가 false 면 의미 없음
+    public final float[] probabilities = new float[TensorFlowClassifier.NUM_CLASSES];
+    public boolean verified;
+
+    /**
+     * Copies both eye rectangles out of {@code gray} into buffers from {@code buffers} and
+     * the quality values out of {@code quality}. Buffers held from a previous fill are released.
+     */
+    public void fill(CropBufferPool buffers, GrayFrame gray, EyeRegions eyes, CheckQuality quality) {
+        release(buffers);
+        left = buffers.acquire(eyes.left.width(), eyes.left.height());
+        right = buffers.acquire(eyes.right.width(), eyes.right.height());
+        left.copyFrom(gray, eyes.left.left, eyes.left.top, eyes.left.width(), eyes.left.height());
+        right.copyFrom(gray, eyes.right.left, eyes.right.top, eyes.right.width(), eyes.right.height());
+        blurLeft = quality.mBlur_L;
+        blurRight = quality.mBlur_R;
+        ear = quality.mEar;
+        pose.set(quality.mPose);
+        verified = false;
+    }
+
+    /**
+     * Gives both crops back to {@code buffers}.
+     */
+    public void release(CropBufferPool buffers) {
+        buffers.release(left);
+        buffers.release(right);
+        left = null;
+        right = null;
+        verified = false;
+    }
+}
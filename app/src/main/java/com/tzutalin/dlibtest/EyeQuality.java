@@ -0,0 +1,35 @@
+package com.tzutalin.dlibtest;
+
+/**
+ * Reusable result of {@link EyeQualityKernel} for one eye crop.
+ */
+public class EyeQuality {
+
+    /** Variance of the 4-neighbour Laplacian: low when the crop is blurred */
+    public double laplacianVariance;
+    /** Mean squared Sobel gradient magnitude */
+    public double tenengrad;
+    /** Mean luma, 0 ~ 255 */
+    public double mean;
+    /** RMS contrast: standard deviation of the luma */
+    public double contrast;
+    /** Pixels at or above {@link EyeQualityKernel#SATURATION_LEVEL} */
+    public int saturatedCount;
+    public int pixelCount;
+
+    /**
+     * @return standard deviation of the Laplacian, the value CheckQuality used to report as blur
+     */
+    public double laplacianStdDev() {
+        return Math.sqrt(laplacianVariance);
+    }
+
+    void clear() {
+        laplacianVariance = 0;
+        tenengrad = 0;
+        mean = 0;
+        contrast = 0;
+        saturatedCount = 0;
+        pixelCount = 0;
+    }
+}
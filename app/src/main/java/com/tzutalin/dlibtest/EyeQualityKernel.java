@@ -0,0 +1,84 @@
+package com.tzutalin.dlibtest;
+
+/**
+ * Sharpness and exposure statistics of a gray eye crop, computed in one pass over the
+ * crop and read in place from the frame. Laplacian and Sobel responses are taken on
+ * pixels whose 3x3 neighbourhood lies inside the crop; luma statistics on all pixels.
+ */
+public final class EyeQualityKernel {
+
+    public static final int SATURATION_LEVEL = 250;
+
+    private EyeQualityKernel() {
+    }
+
+    /**
+     * @param pixels gray frame, rows of {@code stride} bytes
+     * @param stride row stride of the frame
+     * @param left   crop left
+     * @param top    crop top
+     * @param width  crop width
+     * @param height crop height
+     * @param out    receives the statistics
+     */
+    public static void measure(byte[] pixels, int stride, int left, int top, int width, int height,
+                               EyeQuality out) {
+        out.clear();
+        if (width <= 0 || height <= 0) {
+            return;
+        }
+
+        long sum = 0;
+        long sumSq = 0;
+        int saturated = 0;
+        long lapSum = 0;
+        long lapSumSq = 0;
+        long gradSum = 0;
+        int inner = 0;
+
+        for (int y = 0; y < height; y++) {
+            final int row = (top + y) * stride + left;
+            final boolean innerRow = y > 0 && y < height - 1;
+            for (int x = 0; x < width; x++) {
+                final int p = row + x;
+                final int c = pixels[p] & 0xff;
+                sum += c;
+                sumSq += c * c;
+                if (c >= SATURATION_LEVEL) {
+                    saturated++;
+                }
+
+                if (innerRow && x > 0 && x < width - 1) {
+                    final int n = pixels[p - stride] & 0xff;
+                    final int s = pixels[p + stride] & 0xff;
+                    final int w = pixels[p - 1] & 0xff;
+                    final int e = pixels[p + 1] & 0xff;
+                    final int nw = pixels[p - stride - 1] & 0xff;
+                    final int ne = pixels[p - stride + 1] & 0xff;
+                    final int sw = pixels[p + stride - 1] & 0xff;
+                    final int se = pixels[p + stride + 1] & 0xff;
+
+                    final int lap = n + s + w + e - 4 * c;
+                    lapSum += lap;
+                    lapSumSq += lap * lap;
+
+                    final int gx = (ne + 2 * e + se) - (nw + 2 * w + sw);
+                    final int gy = (sw + 2 * s + se) - (nw + 2 * n + ne);
+                    gradSum += gx * gx + gy * gy;
+                    inner++;
+                }
+            }
+        }
+
+        final int count = width * height;
+        out.pixelCount = count;
+        out.saturatedCount = saturated;
+        out.mean = (double) sum / count;
+        out.contrast = Math.sqrt(Math.max(0, (double) sumSq / count - out.mean * out.mean));
+        if (inner > 0) {
+            final double lapMean = (double) lapSum / inner;
+            out.laplacianVariance = Math.max(0, (double) lapSumSq / inner - lapMean * lapMean);
+            out.tenengrad = (double) gradSum / inner;
+        }
+    }
+}
@@ -0,0 +1,221 @@
+package com.tzutalin.dlibtest;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+
+/**
+ * Turns gray eye crops into the normalized classifier inputs of every scale at once.
+ * <p>
+ * Each source row is read once, normalized to [0, 1] through a 256 entry table and
+ * area averaged horizontally into every scale; the rows are then area averaged
+ * vertically into one direct FloatBuffer per scale holding a batch of images.
+ * Area averaging weighs every source pixel by how much of an output pixel it covers,
+ * so downscaling does not alias and upscaling falls back to replicating pixels. The
+ * span tables are rebuilt only when the crop width or height differs from the previous one.
+ * Buffers and scratch arrays only grow; in steady state nothing is allocated.
+ * Not thread safe.
+ */
+public class EyeTensorPreprocessor {
+
+    private static final float[] NORM_LUT = new float[256];
+
+    static {
+        for (int i = 0; i < NORM_LUT.length; i++) {
+            NORM_LUT[i] = i / 255.0f;
+        }
+    }
+
+    private final int[] mWidths;
+    private final int[] mHeights;
+    private final FloatBuffer[] mBuffers;
+    private int mCapacity;
+
+    // 원본 한 줄 (정규화 후)
+    private float[] mRow = new float[0];
+    // scale 별 가로 방향 평균 결과: 원본 높이 x 출력 너비
+    private final float[][] mColumns;
+    private final float[] mOutRow;
+
+    // scale 별 구간 표: 출력 o 는 first[o] ~ first[o + 1] - 1 번째 (index, weight) 를 합한다
+    private final int[][] mXFirst;
+    private final int[][] mXIndex;
+    private final float[][] mXWeight;
+    private final int[][] mYFirst;
+    private final int[][] mYIndex;
+    private final float[][] mYWeight;
+    // 구간 표를 만든 원본 크기: 같은 크기의 crop 이 이어지면 다시 만들지 않는다
+    private int mSpanWidth = -1;
+    private int mSpanHeight = -1;
+
+    /**
+     * @param widths        input width of every scale
+     * @param heights       input height of every scale
+     * @param batchCapacity number of images each buffer holds at first
+     */
+    public EyeTensorPreprocessor(int[] widths, int[] heights, int batchCapacity) {
+        if (widths.length != heights.length) {
+            throw new IllegalArgumentException("widths and heights differ in length");
+        }
+        final int scales = widths.length;
+        mWidths = widths.clone();
+        mHeights = heights.clone();
+        mBuffers = new FloatBuffer[scales];
+        mColumns = new float[scales][0];
+        mXFirst = new int[scales][];
+        mXIndex = new int[scales][0];
+        mXWeight = new float[scales][0];
+        mYFirst = new int[scales][];
+        mYIndex = new int[scales][0];
+        mYWeight = new float[scales][0];
+        int maxWidth = 0;
+        for (int s = 0; s < scales; s++) {
+            mXFirst[s] = new int[widths[s] + 1];
+            mYFirst[s] = new int[heights[s] + 1];
+            maxWidth = Math.max(maxWidth, widths[s]);
+        }
+        mOutRow = new float[maxWidth];
+        ensureCapacity(Math.max(batchCapacity, 1));
+    }
+
+    /**
+     * Grows the buffers to hold at least {@code batch} images. Images already written are lost
+     * when the buffers grow.
+     */
+    public void ensureCapacity(int batch) {
+        if (batch <= mCapacity) {
+            return;
+        }
+        for (int s = 0; s < mBuffers.length; s++) {
+            mBuffers[s] = ByteBuffer.allocateDirect(batch * mWidths[s] * mHeights[s] * 4)
+                    .order(ByteOrder.nativeOrder())
+                    .asFloatBuffer();
+        }
+        mCapacity = batch;
+    }
+
+    public int getBatchCapacity() {
+        return mCapacity;
+    }
+
+    /**
+     * Writes the inputs of every scale for {@code crop} as image {@code index} of the batch.
+     */
+    public void process(GrayFrame crop, int index) {
+        if (index < 0 || index >= mCapacity) {
+            throw new IndexOutOfBoundsException("image " + index + " of " + mCapacity);
+        }
+        final byte[] pixels = crop.getPixels();
+        final int srcWidth = crop.getWidth();
+        final int srcHeight = crop.getHeight();
+        if (mRow.length < srcWidth) {
+            mRow = new float[srcWidth];
+        }
+        for (int s = 0; s < mWidths.length; s++) {
+            if (mColumns[s].length < srcHeight * mWidths[s]) {
+                mColumns[s] = new float[srcHeight * mWidths[s]];
+            }
+            if (srcWidth != mSpanWidth) {
+                if (mXIndex[s].length < srcWidth + mWidths[s]) {
+                    mXIndex[s] = new int[srcWidth + mWidths[s]];
+                    mXWeight[s] = new float[srcWidth + mWidths[s]];
+                }
+                buildSpans(srcWidth, mWidths[s], mXFirst[s], mXIndex[s], mXWeight[s]);
+            }
+            if (srcHeight != mSpanHeight) {
+                if (mYIndex[s].length < srcHeight + mHeights[s]) {
+                    mYIndex[s] = new int[srcHeight + mHeights[s]];
+                    mYWeight[s] = new float[srcHeight + mHeights[s]];
+                }
+                buildSpans(srcHeight, mHeights[s], mYFirst[s], mYIndex[s], mYWeight[s]);
+            }
+        }
+        mSpanWidth = srcWidth;
+        mSpanHeight = srcHeight;
+
+        // 원본은 한 줄씩 한 번만 읽고, 모든 scale 로 가로 방향 평균
+        final float[] row = mRow;
+        for (int sy = 0; sy < srcHeight; sy++) {
+            final int base = sy * srcWidth;
+            for (int x = 0; x < srcWidth; x++) {
+                row[x] = NORM_LUT[pixels[base + x] & 0xff];
+            }
+            for (int s = 0; s < mWidths.length; s++) {
+                final int width = mWidths[s];
+                final int[] first = mXFirst[s];
+                final int[] xIndex = mXIndex[s];
+                final float[] xWeight = mXWeight[s];
+                final float[] columns = mColumns[s];
+                final int out = sy * width;
+                for (int ox = 0; ox < width; ox++) {
+                    float sum = 0;
+                    for (int k = first[ox]; k < first[ox + 1]; k++) {
+                        sum += row[xIndex[k]] * xWeight[k];
+                    }
+                    columns[out + ox] = sum;
+                }
+            }
+        }
+
+        // 세로 방향 평균은 출력 한 줄씩 direct buffer 로
+        final float[] outRow = mOutRow;
+        for (int s = 0; s < mWidths.length; s++) {
+            final int width = mWidths[s];
+            final int height = mHeights[s];
+            final int[] first = mYFirst[s];
+            final int[] yIndex = mYIndex[s];
+            final float[] yWeight = mYWeight[s];
+            final float[] columns = mColumns[s];
+            final FloatBuffer buffer = mBuffers[s];
+            buffer.clear();
+            buffer.position(index * width * height);
+            for (int oy = 0; oy < height; oy++) {
+                for (int ox = 0; ox < width; ox++) {
+                    outRow[ox] = 0;
+                }
+                for (int k = first[oy]; k < first[oy + 1]; k++) {
+                    final int in = yIndex[k] * width;
+                    final float weight = yWeight[k];
+                    for (int ox = 0; ox < width; ox++) {
+                        outRow[ox] += columns[in + ox] * weight;
+                    }
+                }
+                buffer.put(outRow, 0, width);
+            }
+        }
+    }
+
+    /**
+     * @return the buffer of {@code scale} positioned at the first image and limited to
+     *         {@code count} images, ready to be fed
+     */
+    public FloatBuffer getInput(int scale, int count) {
+        if (count < 0 || count > mCapacity) {
+            throw new IndexOutOfBoundsException(count + " images of " + mCapacity);
+        }
+        final FloatBuffer buffer = mBuffers[scale];
+        buffer.clear();
+        buffer.limit(count * mWidths[scale] * mHeights[scale]);
+        return buffer;
+    }
+
+    // 출력 o 가 덮는 원본 구간 [o * r, (o + 1) * r) 과 겹치는 원본 픽셀과 그 비율 (r = src / dst)
+    private static void buildSpans(int srcLength, int dstLength, int[] first, int[] index, float[] weight) {
+        final double ratio = (double) srcLength / dstLength;
+        int k = 0;
+        for (int o = 0; o < dstLength; o++) {
+            first[o] = k;
+            final double start = o * ratio;
+            final double end = Math.min((o + 1) * ratio, srcLength);
+            for (int i = (int) start; i < end; i++) {
+                final double overlap = Math.min(end, i + 1) - Math.max(start, i);
+                if (overlap > 0) {
+                    index[k] = i;
+                    weight[k] = (float) (overlap / ratio);
+                    k++;
+                }
+            }
+        }
+        first[dstLength] = k;
+    }
+}
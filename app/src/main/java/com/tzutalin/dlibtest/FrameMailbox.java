@@ -0,0 +1,109 @@
+package com.tzutalin.dlibtest;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Lock-free hand-off of preview frames from the camera thread to the inference thread.
+ * A fixed ring of {@link PreviewFrame}s is allocated up front; the producer writes into a
+ * free slot and publishes it into a single "latest frame" mailbox, replacing (and dropping)
+ * any frame the consumer has not taken yet. With three slots the producer always finds a
+ * free one: one is being written, one waits in the mailbox and one is being processed.
+ */
+public class FrameMailbox {
+
+    private static final int FREE = 0;
+    private static final int WRITING = 1;
+    private static final int READY = 2;
+    private static final int READING = 3;
+
+    private final PreviewFrame[] mFrames;
+    private final AtomicIntegerArray mStates;
+    private final AtomicReference<PreviewFrame> mLatest = new AtomicReference<>();
+
+    private final AtomicLong mPublishedCount = new AtomicLong();
+    private final AtomicLong mDroppedCount = new AtomicLong();
+
+    public FrameMailbox(int capacity, int frameSize) {
+        if (capacity < 3) {
+            throw new IllegalArgumentException("At least 3 slots are needed, got " + capacity);
+        }
+        mFrames = new PreviewFrame[capacity];
+        for (int i = 0; i < capacity; i++) {
+            mFrames[i] = new PreviewFrame(i, frameSize);
+        }
+        mStates = new AtomicIntegerArray(capacity);
+    }
+
+    /**
+     * Producer side: claims a free slot, or returns null if every slot is busy.
+     */
+    public PreviewFrame acquireForWrite() {
+        for (int i = 0; i < mFrames.length; i++) {
+            if (mStates.compareAndSet(i, FREE, WRITING)) {
+                return mFrames[i];
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Producer side: makes a written slot the latest frame. A frame still waiting in the
+     * mailbox is recycled and counted as dropped.
+     */
+    public void publish(PreviewFrame frame) {
+        mStates.set(frame.index, READY);
+        mPublishedCount.incrementAndGet();
+        final PreviewFrame previous = mLatest.getAndSet(frame);
+        if (previous != null) {
+            mStates.set(previous.index, FREE);
+            mDroppedCount.incrementAndGet();
+        }
+    }
+
+    /**
+     * Producer side: gives back a slot whose write did not complete.
+     */
+    public void abandon(PreviewFrame frame) {
+        mStates.set(frame.index, FREE);
+    }
+
+    /**
+     * Consumer side: takes the freshest frame, or null if nothing new was published.
+     * The caller owns the frame until {@link #release(PreviewFrame)}.
+     */
+    public PreviewFrame take() {
+        final PreviewFrame frame = mLatest.getAndSet(null);
+        if (frame != null) {
+            mStates.set(frame.index, READING);
+        }
+        return frame;
+    }
+
+    /**
+     * Consumer side: returns a taken frame to the ring.
+     */
+    public void release(PreviewFrame frame) {
+        mStates.set(frame.index, FREE);
+    }
+
+    /**
+     * Consumer side: recycles the frame waiting in the mailbox, if any, without processing it.
+     */
+    public void clear() {
+        final PreviewFrame frame = mLatest.getAndSet(null);
+        if (frame != null) {
+            mStates.set(frame.index, FREE);
+            mDroppedCount.incrementAndGet();
+        }
+    }
+
+    public long getPublishedCount() {
+        return mPublishedCount.get();
+    }
+
+    public long getDroppedCount() {
+        return mDroppedCount.get();
+    }
+}
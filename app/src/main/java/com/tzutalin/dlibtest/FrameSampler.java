@@ -0,0 +1,227 @@
+package com.tzutalin.dlibtest;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Fused crop-rotate-downscale kernel from a YUV_420_888 camera frame to the square
+ * detector input. The square at the bottom-right of the sensor frame is scaled to
+ * dstSize and rotated about its center, and only the dstSize x dstSize output is
+ * written: no full-resolution ARGB frame or intermediate Bitmap is ever produced.
+ */
+public class FrameSampler {
+
+    /** Nearest source pixel. Cheapest, aliases when the scale factor is large. */
+    public static final int FILTER_NEAREST = 0;
+    /** 2x2 bilinear interpolation with 8-bit fixed point weights. */
+    public static final int FILTER_BILINEAR = 1;
+    /** Box average over every source pixel covered by the output pixel. */
+    public static final int FILTER_AREA = 2;
+
+    private int mSrcWidth;
+    private int mSrcHeight;
+    private int mDstSize;
+    private int mRotation;
+    private int mFilter = -1;
+
+    // Per column/row of the scaled (not yet rotated) square:
+    //   nearest  - mSrc: source coordinate
+    //   bilinear - mSrc: first of the two source coordinates, mWeight: weight of the second (0..256)
+    //   area     - mSrc: first source coordinate of the box, mWeight: box length
+    private int[] mSrcX;
+    private int[] mSrcY;
+    private int[] mWeightX;
+    private int[] mWeightY;
+    // source coordinate closest to the output pixel center, used to point-sample chroma
+    private int[] mCenterX;
+    private int[] mCenterY;
+
+    public boolean isConfigured(int srcWidth, int srcHeight, int dstSize, int rotation, int filter) {
+        return mSrcX != null
+                && mSrcWidth == srcWidth
+                && mSrcHeight == srcHeight
+                && mDstSize == dstSize
+                && mRotation == normalizeRotation(rotation)
+                && mFilter == filter;
+    }
+
+    /**
+     * Precomputes the sampling tables. Only needs to run when the preview size, the
+     * screen rotation or the filter changes.
+     */
+    public void configure(int srcWidth, int srcHeight, int dstSize, int rotation, int filter) {
+        if (filter != FILTER_NEAREST && filter != FILTER_BILINEAR && filter != FILTER_AREA) {
+            throw new IllegalArgumentException("Unknown filter: " + filter);
+        }
+        mSrcWidth = srcWidth;
+        mSrcHeight = srcHeight;
+        mDstSize = dstSize;
+        mRotation = normalizeRotation(rotation);
+        mFilter = filter;
+
+        if (mSrcX == null || mSrcX.length != dstSize) {
+            mSrcX = new int[dstSize];
+            mSrcY = new int[dstSize];
+            mWeightX = new int[dstSize];
+            mWeightY = new int[dstSize];
+            mCenterX = new int[dstSize];
+            mCenterY = new int[dstSize];
+        }
+
+        final int minDim = Math.min(srcWidth, srcHeight);
+        buildAxis(Math.max(0, srcWidth - minDim), minDim, mSrcX, mWeightX, mCenterX);
+        buildAxis(Math.max(0, srcHeight - minDim), minDim, mSrcY, mWeightY, mCenterY);
+    }
+
+    private void buildAxis(int offset, int length, int[] src, int[] weight, int[] center) {
+        final int size = mDstSize;
+        for (int i = 0; i < size; i++) {
+            // nearest source pixel to the center of output pixel i
+            center[i] = offset + (int) (((2L * i + 1) * length) / (2L * size));
+
+            switch (mFilter) {
+                case FILTER_BILINEAR: {
+                    // center of output pixel i in source pixel units, 8 fractional bits
+                    final long position = ((2L * i + 1) * length * 256) / (2L * size) - 128;
+                    int first = (int) (Math.max(0, position) >> 8);
+                    int fraction = (int) (Math.max(0, position) & 0xff);
+                    if (first >= length - 1) {
+                        // keep both taps inside the square
+                        first = length - 2;
+                        fraction = 256;
+                    }
+                    src[i] = offset + first;
+                    weight[i] = fraction;
+                    break;
+                }
+                case FILTER_AREA: {
+                    final int start = (int) (((long) i * length) / size);
+                    final int end = (int) (((long) (i + 1) * length) / size);
+                    src[i] = offset + start;
+                    weight[i] = Math.max(1, end - start);
+                    break;
+                }
+                default:
+                    src[i] = center[i];
+                    weight[i] = 0;
+                    break;
+            }
+        }
+    }
+
+    /**
+     * Writes the rotated, cropped and downscaled luma into {@code gray}.
+     * The plane is read in place starting at the buffer's current position.
+     * @param y          Y plane of a YUV_420_888 image
+     * @param yRowStride row stride of the Y plane in bytes
+     * @param gray       output frame, reshaped to dstSize x dstSize
+     */
+    public void sampleLuma(ByteBuffer y, int yRowStride, GrayFrame gray) {
+        sample(y, null, null, yRowStride, 0, 0, gray, null);
+    }
+
+    /**
+     * Same as {@link #sampleLuma(ByteBuffer, int, GrayFrame)} and additionally writes
+     * opaque ARGB pixels. Chroma is point-sampled at half resolution.
+     * @param argb output array of at least dstSize * dstSize entries
+     */
+    public void sampleArgb(ByteBuffer y, ByteBuffer u, ByteBuffer v,
+                           int yRowStride, int uvRowStride, int uvPixelStride,
+                           GrayFrame gray, int[] argb) {
+        sample(y, u, v, yRowStride, uvRowStride, uvPixelStride, gray, argb);
+    }
+
+    private void sample(ByteBuffer y, ByteBuffer u, ByteBuffer v,
+                        int yRowStride, int uvRowStride, int uvPixelStride,
+                        GrayFrame gray, int[] argb) {
+        final int size = mDstSize;
+        gray.reshape(size, size);
+        final byte[] out = gray.getPixels();
+        final int step = columnStep();
+        final int yBase = y.position();
+        final int uBase = u != null ? u.position() : 0;
+        final int vBase = v != null ? v.position() : 0;
+
+        // Walk the source in row order and scatter into the rotated position.
+        for (int row = 0; row < size; row++) {
+            final int rowOffset = yBase + mSrcY[row] * yRowStride;
+            final int rowWeight = mWeightY[row];
+            final int uvRow = (mCenterY[row] >> 1) * uvRowStride;
+            int index = rowStart(row);
+
+            for (int col = 0; col < size; col++) {
+                final int luma;
+                switch (mFilter) {
+                    case FILTER_BILINEAR: {
+                        final int x = rowOffset + mSrcX[col];
+                        final int wx = mWeightX[col];
+                        final int top = (y.get(x) & 0xff) * (256 - wx) + (y.get(x + 1) & 0xff) * wx;
+                        final int bottom = (y.get(x + yRowStride) & 0xff) * (256 - wx)
+                                + (y.get(x + yRowStride + 1) & 0xff) * wx;
+                        luma = (top * (256 - rowWeight) + bottom * rowWeight + (1 << 15)) >> 16;
+                        break;
+                    }
+                    case FILTER_AREA: {
+                        final int width = mWeightX[col];
+                        int sum = 0;
+                        int p = rowOffset + mSrcX[col];
+                        for (int j = 0; j < rowWeight; j++) {
+                            for (int i = 0; i < width; i++) {
+                                sum += y.get(p + i) & 0xff;
+                            }
+                            p += yRowStride;
+                        }
+                        final int count = width * rowWeight;
+                        luma = (sum + (count >> 1)) / count;
+                        break;
+                    }
+                    default:
+                        luma = y.get(rowOffset + mSrcX[col]) & 0xff;
+                        break;
+                }
+                out[index] = (byte) luma;
+
+                if (argb != null) {
+                    final int uvOffset = uvRow + (mCenterX[col] >> 1) * uvPixelStride;
+                    argb[index] = JavaYuvConverter.yuvToArgb(
+                            luma, u.get(uBase + uvOffset) & 0xff, v.get(vBase + uvOffset) & 0xff);
+                }
+                index += step;
+            }
+        }
+    }
+
+    private int rowStart(int v) {
+        final int size = mDstSize;
+        switch (mRotation) {
+            case 90:
+                return size - 1 - v;
+            case 180:
+                return (size - 1 - v) * size + size - 1;
+            case 270:
+                return (size - 1) * size + v;
+            default:
+                return v * size;
+        }
+    }
+
+    private int columnStep() {
+        switch (mRotation) {
+            case 90:
+                return mDstSize;
+            case 180:
+                return -1;
+            case 270:
+                return -mDstSize;
+            default:
+                return 1;
+        }
+    }
+
+    private static int normalizeRotation(int rotation) {
+        final int normalized = ((rotation % 360) + 360) % 360;
+        if (normalized % 90 != 0) {
+            throw new IllegalArgumentException("Rotation must be a multiple of 90: " + rotation);
+        }
+        return normalized;
+    }
+}
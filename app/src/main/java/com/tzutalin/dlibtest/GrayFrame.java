@@ -0,0 +1,80 @@
+package com.tzutalin.dlibtest;
+
+import android.graphics.Bitmap;
+
+/**
+ * 8-bit single channel image, rows packed without padding.
+ * dlib landmarking, CheckQuality and the classifier only consume luma, so the preview
+ * pipeline keeps frames in this form and expands to ARGB only where a Bitmap is required.
+ */
+public class GrayFrame {
+
+    private byte[] mPixels;
+    private int mWidth;
+    private int mHeight;
+
+    public GrayFrame(int width, int height) {
+        reshape(width, height);
+    }
+
+    /**
+     * Changes the frame size, reusing the pixel array whenever it is large enough.
+     */
+    public void reshape(int width, int height) {
+        if (width <= 0 || height <= 0) {
+            throw new IllegalArgumentException("Size must be positive: " + width + "x" + height);
+        }
+        if (mPixels == null || mPixels.length < width * height) {
+            mPixels = new byte[width * height];
+        }
+        mWidth = width;
+        mHeight = height;
+    }
+
+    public byte[] getPixels() {
+        return mPixels;
+    }
+
+    public int getWidth() {
+        return mWidth;
+    }
+
+    public int getHeight() {
+        return mHeight;
+    }
+
+    /**
+     * Copies a rectangle of {@code src} into this frame, reshaping it to the rectangle size.
+     */
+    public void copyFrom(GrayFrame src, int left, int top, int width, int height) {
+        if (left < 0 || top < 0 || left + width > src.mWidth || top + height > src.mHeight) {
+            throw new IllegalArgumentException("Rectangle outside of the source frame");
+        }
+        reshape(width, height);
+        for (int y = 0; y < height; y++) {
+            System.arraycopy(src.mPixels, (top + y) * src.mWidth + left, mPixels, y * width, width);
+        }
+    }
+
+    /**
+     * @return a new opaque ARGB_8888 Bitmap with the gray pixels, for APIs that need one
+     */
+    public Bitmap toBitmap() {
+        final Bitmap bitmap = Bitmap.createBitmap(mWidth, mHeight, Bitmap.Config.ARGB_8888);
+        writeTo(bitmap, new int[mWidth * mHeight]);
+        return bitmap;
+    }
+
+    /**
+     * Expands the gray pixels to opaque ARGB and uploads them into {@code dst}.
+     * @param dst  Bitmap of the same size as this frame
+     * @param argb scratch buffer of at least width * height entries
+     */
+    public void writeTo(Bitmap dst, int[] argb) {
+        final int count = mWidth * mHeight;
+        for (int i = 0; i < count; i++) {
+            argb[i] = 0xff000000 | ((mPixels[i] & 0xff) * 0x010101);
+        }
+        dst.setPixels(argb, 0, mWidth, 0, 0, mWidth, mHeight);
+    }
+}
@@ -32,15 +32,20 @@ import timber.log.Timber;
 public class ImageUtils {
     private static final String TAG = ImageUtils.class.getSimpleName();
 
+    /**
+     * @return the directory {@link #saveBitmap} and {@link CropWriter} write to
+     */
+    public static File getOutputDirectory() {
+        return new File(Environment.getExternalStorageDirectory(), "dlib");
+    }
+
     /**
      * Saves a Bitmap object to disk for analysis.
      * @param bitmap The bitmap to save.
      */
     public static void saveBitmap(final Bitmap bitmap, String stringTime) {
-        final String root =
-                Environment.getExternalStorageDirectory().getAbsolutePath() + File.separator + "dlib";
-        Timber.tag(TAG).d(String.format("Saving %dx%d bitmap to %s.", bitmap.getWidth(), bitmap.getHeight(), root));
-        final File myDir = new File(root);
+        final File myDir = getOutputDirectory();
+        Timber.tag(TAG).d(String.format("Saving %dx%d bitmap to %s.", bitmap.getWidth(), bitmap.getHeight(), myDir));
 
         if (!myDir.mkdirs()) {
             Timber.tag(TAG).e("Make dir failed");
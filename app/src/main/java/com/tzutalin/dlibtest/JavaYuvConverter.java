@@ -0,0 +1,30 @@
+package com.tzutalin.dlibtest;
+
+/**
+ * Pure Java YUV to ARGB kernel used by {@link FrameSampler}. Uses the same 10-bit fixed
+ * point BT.601 coefficients as the native converters declared in {@link ImageUtils}, so
+ * its output is identical to theirs.
+ */
+final class JavaYuvConverter {
+
+    // 2^18 - 1: channel values are kept with 10 fractional bits
+    private static final int MAX_CHANNEL_VALUE = 262143;
+
+    private JavaYuvConverter() {}
+
+    static int yuvToArgb(int y, int u, int v) {
+        final int y1192 = 1192 * Math.max(0, y - 16);
+        u -= 128;
+        v -= 128;
+
+        final int r = clamp(y1192 + 1634 * v);
+        final int g = clamp(y1192 - 833 * v - 400 * u);
+        final int b = clamp(y1192 + 2066 * u);
+
+        return 0xff000000 | ((r << 6) & 0xff0000) | ((g >> 2) & 0xff00) | ((b >> 10) & 0xff);
+    }
+
+    private static int clamp(int value) {
+        return value < 0 ? 0 : (value > MAX_CHANNEL_VALUE ? MAX_CHANNEL_VALUE : value);
+    }
+}
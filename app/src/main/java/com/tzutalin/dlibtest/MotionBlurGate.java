@@ -0,0 +1,126 @@
+package com.tzutalin.dlibtest;
+
+import android.os.SystemClock;
+
+import java.util.Locale;
+
+/**
+ * Predicts the motion blur of a preview frame from the gyroscope and the exposure time
+ * so that frames that will be blurry are dropped before face detection.
+ * <p>
+ * A rotation of the phone by w rad/s during an exposure of t seconds moves the image
+ * by about w * t * f pixels, f being the focal length in pixels. Rotation around the
+ * optical axis (device z for the front camera) is counted at a quarter of the frame
+ * width from the center, where the face usually is.
+ * Frames are never skipped while the exposure, the lens or a recent gyro sample is unknown.
+ */
+public class MotionBlurGate {
+
+    public static final float DEFAULT_MAX_BLUR_PIXELS = 4f;
+    private static final long MAX_GYRO_AGE_NANOS = 200000000L;
+
+    // CameraThread 에서 쓰고 ImageListener 스레드에서 읽는다
+    private volatile long mExposureNanos;
+    private volatile float mFocalMm;
+    private volatile float mSensorWidthMm;
+
+    private float mMaxBlurPixels = DEFAULT_MAX_BLUR_PIXELS;
+    private boolean mEnabled = true;
+
+    private long mChecked;
+    private long mSkipped;
+    private long mUnknown;
+    private float mLastBlur;
+
+    /**
+     * @param focalMm       lens focal length, mm
+     * @param sensorWidthMm width of the sensor pixel array, mm
+     */
+    public void setLens(float focalMm, float sensorWidthMm) {
+        mFocalMm = focalMm;
+        mSensorWidthMm = sensorWidthMm;
+    }
+
+    /**
+     * @param exposureNanos exposure time of the latest capture result
+     */
+    public void setExposureTime(long exposureNanos) {
+        mExposureNanos = exposureNanos;
+    }
+
+    /**
+     * @param maxBlurPixels largest predicted blur, in detector input pixels, that is still processed
+     */
+    public void setMaxBlur(float maxBlurPixels) {
+        mMaxBlurPixels = maxBlurPixels;
+    }
+
+    public void setEnabled(boolean enabled) {
+        mEnabled = enabled;
+    }
+
+    /**
+     * Predicted blur length of the current frame.
+     * @param pixelsAcrossSensor image width in the pixels the blur is measured in, as if the
+     *                           image spanned the whole sensor width
+     * @return blur in those pixels, or a negative value if it cannot be predicted
+     */
+    public float predictBlur(float pixelsAcrossSensor) {
+        if (SystemClock.elapsedRealtimeNanos() - SensorListener.getGyroTimestamp() > MAX_GYRO_AGE_NANOS) {
+            return -1;
+        }
+        return predictBlur(mExposureNanos, mFocalMm, mSensorWidthMm,
+                SensorListener.getPanTiltSpeed(), SensorListener.getRollSpeed(), pixelsAcrossSensor);
+    }
+
+    /**
+     * @param panTiltSpeed rotation speed around the axes across the optical axis, rad/s
+     * @param rollSpeed    rotation speed around the optical axis, rad/s
+     * @return blur in pixels, or a negative value if the exposure or the lens is unknown
+     * @see #predictBlur(float)
+     */
+    static float predictBlur(long exposureNanos, float focalMm, float sensorWidthMm,
+                             float panTiltSpeed, float rollSpeed, float pixelsAcrossSensor) {
+        if (exposureNanos <= 0 || focalMm <= 0 || sensorWidthMm <= 0) {
+            return -1;
+        }
+        final float focalPixels = focalMm / sensorWidthMm * pixelsAcrossSensor;
+        final float seconds = exposureNanos / 1e9f;
+        return seconds * (panTiltSpeed * focalPixels + rollSpeed * pixelsAcrossSensor / 4);
+    }
+
+    /**
+     * @return true if the current frame should not be processed
+     * @see #predictBlur(float)
+     */
+    public boolean shouldSkip(float pixelsAcrossSensor) {
+        if (!mEnabled) {
+            return false;
+        }
+        mChecked++;
+        final float blur = predictBlur(pixelsAcrossSensor);
+        mLastBlur = blur;
+        if (blur < 0) {
+            mUnknown++;
+            return false;
+        }
+        if (blur > mMaxBlurPixels) {
+            mSkipped++;
+            return true;
+        }
+        return false;
+    }
+
+    public long getSkippedCount() {
+        return mSkipped;
+    }
+
+    public float getLastBlur() {
+        return mLastBlur;
+    }
+
+    public String getSummary() {
+        return String.format(Locale.US, "motion blur gate: checked %d, skipped %d, unknown %d",
+                mChecked, mSkipped, mUnknown);
+    }
+}
@@ -7,13 +7,13 @@ import android.graphics.Bitmap;
 import android.graphics.Bitmap.Config;
 import android.graphics.Canvas;
 import android.graphics.Color;
-import android.graphics.Matrix;
 import android.graphics.Paint;
 import android.graphics.Point;
 import android.graphics.Rect;
 import android.hardware.Sensor;
 import android.hardware.SensorEventListener;
 import android.hardware.SensorManager;
+import android.hardware.camera2.CaptureResult;
 import android.media.Image;
 import android.media.Image.Plane;
 import android.media.ImageReader;
@@ -31,6 +31,8 @@ import android.widget.FrameLayout;
 import android.widget.TextView;
 
 import com.tzutalin.dlib.Constants;
+import com.tzutalin.dlib.EyeRegionCalculator;
+import com.tzutalin.dlib.EyeRegions;
 import com.tzutalin.dlib.FaceDet;
 import com.tzutalin.dlib.VisionDetRet;
 
@@ -42,6 +44,8 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import okhttp3.Call;
 import okhttp3.Callback;
@@ -54,23 +58,75 @@ public class OnGetImageListener implements OnImageAvailableListener {
     private static final String TAG = "ImageListener";
 
     private int mScreenRotation = 90;
+    private volatile boolean mDisplayChanged = true;
     private int mPreviewWdith = 0;
     private int mPreviewHeight = 0;
-    private byte[][] mYUVBytes;
-    private int[] mRGBBytes = null;
-    private Bitmap mRGBframeBitmap = null;
-    private Bitmap mBitmap = null;
-    private Bitmap mCroppedBitmap = null;
 
-    private boolean mIsComputing = false;
+    // luma-only 모드: Y plane 에서 바로 gray frame 을 만들고 ARGB 변환은 건너뛴다
+    private boolean mLumaOnly = true;
+    // YUV plane -> 500x500 detector 입력을 crop + rotate + downscale 한 번에 샘플링
+    private final FrameSampler mFrameSampler = new FrameSampler();
+    // area 평균이 기본값: nearest 는 aliasing 으로 blur(Laplacian) 값이 부풀려진다
+    private int mSamplingFilter = FrameSampler.FILTER_AREA;
+
+    // camera thread -> InferenceThread 프레임 전달 (항상 가장 최신 프레임만 처리)
+    private static final int FRAME_POOL_SIZE = 3;
+    private FrameMailbox mFrameMailbox;
+    private final AtomicBoolean mInferenceScheduled = new AtomicBoolean(false);
     private Handler mInferenceHandler;
 
     private Context mContext;
     private FaceDet mFaceDet;
 
-    int mNumCrop =0;
-    Bitmap bitmap_left[] = new Bitmap[6];
-    Bitmap bitmap_right[]= new Bitmap[6];
+    // 프레임 밖으로 나가는 눈 영역은 crop 전에 걸러낸다 (InferenceThread 전용)
+    private final EyeRegionCalculator mEyeRegionCalculator = new EyeRegionCalculator();
+    private final EyeRegions mEyeRegions = new EyeRegions();
+    // geometry -> exposure -> eye openness -> sharpness 순서로 검사, 통과한 얼굴만 crop
+    private final CheckQuality mQuality = new CheckQuality();
+    private final QualityCascade mQualityCascade = new QualityCascade();
+    // liveness 모드: 눈 깜빡임을 확인하기 전까지 crop 을 받지 않는다 (사진 방지)
+    private volatile boolean mLivenessRequired = false;
+    private final BlinkDetector mBlinkDetector = new BlinkDetector();
+
+    // 품질 점수가 가장 높은 K 개의 눈 crop 만 유지한다 (InferenceThread 전용)
+    public static final int BEST_FRAME_COUNT = 5;
+    // 눈 crop 버퍼는 선택(BestFrameSelector)과 저장(CropWriter)이 이 pool 에서 빌려 쓰고 돌려준다
+    private final CropBufferPool mCropBuffers = new CropBufferPool();
+    // inference 스레드에서만 바꾼다 (setBestFrameLimits 참고), volatile 은 initialize 전 교체용
+    private volatile BestFrameSelector mBestFrames = new BestFrameSelector(BEST_FRAME_COUNT, 15, 1500, mCropBuffers);
+    // 촬영 상태: ALIGNING (후보 없음) -> COLLECTING (상위 K 개 수집 중) -> COMPLETE -> HANDED_OFF
+    // 전이는 한 방향으로만 일어나고, COMPLETE 이후의 프레임은 처리하지 않는다
+    public static final int CAPTURE_ALIGNING = 0;
+    public static final int CAPTURE_COLLECTING = 1;
+    public static final int CAPTURE_COMPLETE = 2;
+    public static final int CAPTURE_HANDED_OFF = 3;
+    private final AtomicInteger mCaptureState = new AtomicInteger(CAPTURE_ALIGNING);
+    private volatile OnCaptureCompleteListener mCaptureCompleteListener;
+
+    /**
+     * Receives the selected crops exactly once per capture, on the inference thread.
+     */
+    public interface OnCaptureCompleteListener {
+        void onCaptureComplete(CaptureSession session);
+    }
+    // crop 파일 저장은 CropWriter 스레드에서 한다 (InferenceThread 가 저장소를 기다리지 않도록)
+    private static final int CROP_QUEUE_SIZE = 8;
+    private CropWriter mCropWriter;
+    // 기본은 세션마다 하나의 raw archive 파일, false 면 crop 마다 PNG 파일
+    private boolean mArchiveCrops = true;
+    // archive 를 열지 못하면 PNG 파일로 쓴다
+    private boolean mWritingArchive;
+    // 눈 영역은 대략 6h x 2.8h (h: 눈 높이) 이므로 500x500 입력에서 이 크기를 넘지 않는다
+    private static final int ARCHIVE_MAX_WIDTH = 256;
+    private static final int ARCHIVE_MAX_HEIGHT = 128;
+    private final CropMetadata mCropMetadata = new CropMetadata();
+    // 자이로 + 노출 시간으로 예측한 motion blur 가 크면 프레임을 처리하지 않는다
+    private final MotionBlurGate mMotionBlurGate = new MotionBlurGate();
+    // 받아들인 눈 쌍은 촬영 중에 바로 verification 하고, 클래스 간 차이가 충분하면 일찍 끝낸다
+    private final TensorFlowClassifier mClassifier = TensorFlowClassifier.getInstance();
+    private boolean mStreamingVerification = true;
+    private final VerificationEvidence mEvidence = new VerificationEvidence(TensorFlowClassifier.NUM_CLASSES);
+    private String mLabel;
 
     private ArrayList<Float> mEyeIndex = new ArrayList<>();
     private float mEyeWidth;
@@ -106,6 +162,33 @@ public class OnGetImageListener implements OnImageAvailableListener {
         this.mContext = context;
         this.mInferenceHandler = handler;
         mFaceDet = new FaceDet(Constants.getFaceShapeModelPath());
+        if (mFrameMailbox == null) {
+            mFrameMailbox = new FrameMailbox(FRAME_POOL_SIZE, INPUT_SIZE);
+        }
+        mCropWriter = new CropWriter(ImageUtils.getOutputDirectory(), CROP_QUEUE_SIZE, CropWriter.DROP_OLDEST, mCropBuffers);
+        mWritingArchive = false;
+        if (mArchiveCrops) {
+            final File dir = ImageUtils.getOutputDirectory();
+            final File file = new File(dir, "crops_" + System.currentTimeMillis() + ".eyec");
+            try {
+                if (!dir.isDirectory() && !dir.mkdirs()) {
+                    throw new IOException("Make dir failed: " + dir);
+                }
+                mCropWriter.setArchive(new CropArchive(file, ARCHIVE_MAX_WIDTH, ARCHIVE_MAX_HEIGHT));
+                mWritingArchive = true;
+                Log.i(TAG, "writing crops to " + file);
+            } catch (IOException e) {
+                Log.e(TAG, "cannot open crop archive, writing PNG files", e);
+            }
+        }
+        mCropWriter.start();
+        mLabel = label;
+
+        // 카메라를 다시 열면 새 촬영을 시작한다
+        mBestFrames.reset();
+        mEvidence.reset();
+        mBlinkDetector.reset();
+        mCaptureState.set(CAPTURE_ALIGNING);
 //      mWindow = new FloatingCameraWindow(mContext);
 
         mFaceLandmardkPaint = new Paint();
@@ -133,10 +216,173 @@ public class OnGetImageListener implements OnImageAvailableListener {
                 mFaceDet.release();
             }
         }
+        if (mFrameMailbox != null) {
+            Log.i(TAG, String.format("frames published: %d, dropped: %d",
+                    mFrameMailbox.getPublishedCount(), mFrameMailbox.getDroppedCount()));
+        }
+        Log.i(TAG, mMotionBlurGate.getSummary());
+        if (mLivenessRequired) {
+            Log.i(TAG, "blinks: " + mBlinkDetector.getBlinkCount());
+        }
+        Log.i(TAG, "quality gates\n" + mQualityCascade.getSummary());
+        if (mCropWriter != null) {
+            mCropWriter.close();
+            Log.i(TAG, mCropWriter.getSummary());
+        }
+        Log.i(TAG, mCropBuffers.getSummary());
+    }
+
+
+    /**
+     * Selects the luma-only pipeline (default) or sampling colour into the detector input.
+     * Must be called before the first preview frame arrives.
+     */
+    public void setLumaOnly(boolean lumaOnly) {
+        mLumaOnly = lumaOnly;
+    }
+
+
+    /**
+     * Selects how the sensor frame is downscaled to the detector input, one of
+     * {@link FrameSampler#FILTER_NEAREST}, {@link FrameSampler#FILTER_BILINEAR} or
+     * {@link FrameSampler#FILTER_AREA} (default).
+     * Must be called before the first preview frame arrives.
+     */
+    public void setSamplingFilter(int filter) {
+        mSamplingFilter = filter;
     }
 
 
-    private void drawResizedBitmap(final Bitmap src, final Bitmap dst) {
+    /**
+     * Requires a blink before any crop is accepted. The blink is detected from the eye
+     * aspect ratio of the first face, see {@link BlinkDetector}. Off by default and not
+     * enabled by the app yet: there is no on-screen blink prompt, so callers that enable it
+     * must ask the user to blink themselves.
+     */
+    public void setLivenessRequired(boolean required) {
+        mLivenessRequired = required;
+    }
+
+
+    /**
+     * Changes how many candidates or how much time the best-frame selection looks at
+     * before handing off its {@link #BEST_FRAME_COUNT} best crops.
+     * Once initialized the swap runs on the inference thread, so a frame in progress keeps
+     * its selector and the current collection starts over.
+     */
+    public void setBestFrameLimits(int frameBudget, long windowMs) {
+        final BestFrameSelector selector = new BestFrameSelector(BEST_FRAME_COUNT, frameBudget, windowMs, mCropBuffers);
+        final Runnable swap = new Runnable() {
+            @Override
+            public void run() {
+                mBestFrames.reset();
+                mBestFrames = selector;
+                mEvidence.reset();
+                mCaptureState.compareAndSet(CAPTURE_COLLECTING, CAPTURE_ALIGNING);
+            }
+        };
+        final Handler handler = mInferenceHandler;
+        // 초기화 전이거나 inference 스레드가 끝났으면 바로 바꾼다
+        if (handler == null || !handler.post(swap)) {
+            swap.run();
+        }
+    }
+
+
+    /**
+     * Verifies each accepted eye pair while capturing (default) and ends the capture as
+     * soon as the evidence reaches {@code margin}, or after {@code maxPairs} pairs without
+     * a decision. See {@link VerificationEvidence}. When disabled, or while the model is
+     * still loading, the capture ends on the best-frame limits only.
+     * Must be called before the first preview frame arrives.
+     */
+    public void setStreamingVerification(boolean enabled, float margin, int maxPairs) {
+        mStreamingVerification = enabled;
+        mEvidence.setLimits(margin, maxPairs);
+    }
+
+
+    /**
+     * Writes accepted crops to one raw {@link CropArchive} per session (default) instead of
+     * one PNG file per crop. Must be called before {@link #initialize}.
+     */
+    public void setArchiveCrops(boolean archive) {
+        mArchiveCrops = archive;
+    }
+
+
+    /**
+     * Sets who receives the crops when the capture completes. Must be set before the
+     * first preview frame arrives.
+     */
+    public void setOnCaptureCompleteListener(OnCaptureCompleteListener listener) {
+        mCaptureCompleteListener = listener;
+    }
+
+
+    /**
+     * @return one of {@link #CAPTURE_ALIGNING}, {@link #CAPTURE_COLLECTING},
+     *         {@link #CAPTURE_COMPLETE} or {@link #CAPTURE_HANDED_OFF}
+     */
+    public int getCaptureState() {
+        return mCaptureState.get();
+    }
+
+
+    /**
+     * Passes the lens of the opened camera to the motion blur gate.
+     * @param focalMm       focal length, mm
+     * @param sensorWidthMm width of the sensor pixel array, mm
+     */
+    public void setLensCharacteristics(float focalMm, float sensorWidthMm) {
+        mMotionBlurGate.setLens(focalMm, sensorWidthMm);
+    }
+
+
+    /**
+     * Called for every capture result of the preview: keeps the exposure time for the
+     * motion blur gate.
+     */
+    public void onCaptureResult(CaptureResult result) {
+        final Long exposure = result.get(CaptureResult.SENSOR_EXPOSURE_TIME);
+        if (exposure != null) {
+            mMotionBlurGate.setExposureTime(exposure);
+        }
+    }
+
+
+    /**
+     * @return the motion blur gate, to change its threshold or disable it
+     */
+    public MotionBlurGate getMotionBlurGate() {
+        return mMotionBlurGate;
+    }
+
+
+    /**
+     * @return the quality gates, to change thresholds or order before the first frame
+     */
+    public QualityCascade getQualityCascade() {
+        return mQualityCascade;
+    }
+
+
+    /**
+     * Called when the display size or rotation may have changed
+     * (CameraConnectionFragment#configureTransform). The display is queried again
+     * on the next frame instead of on every frame.
+     */
+    public void onDisplayChanged() {
+        mDisplayChanged = true;
+    }
+
+
+    private void updateScreenRotation() {
+        if (!mDisplayChanged) {
+            return;
+        }
+        mDisplayChanged = false;
+
         Display getOrient = ((WindowManager) mContext.getSystemService(Context.WINDOW_SERVICE)).getDefaultDisplay();
         int orientation = Configuration.ORIENTATION_UNDEFINED;
         Point point = new Point();
@@ -151,227 +397,299 @@ public class OnGetImageListener implements OnImageAvailableListener {
             orientation = Configuration.ORIENTATION_LANDSCAPE;
             mScreenRotation = 180;
         }
-
-        Assert.assertEquals(dst.getWidth(), dst.getHeight());
-        final float minDim = Math.min(src.getWidth(), src.getHeight());
-        final Matrix matrix = new Matrix();
-
-        // We only want the center square out of the original rectangle.
-        final float translateX = -Math.max(0, (src.getWidth() - minDim));
-        final float translateY = -Math.max(0, (src.getHeight() - minDim));
-        matrix.preTranslate(translateX, translateY);
-        float scaleFactor = dst.getHeight() / minDim;
-        matrix.postScale(scaleFactor, scaleFactor);
-        // Rotate around the center if necessary.
-        if (mScreenRotation != 0) {
-            matrix.postTranslate(-dst.getWidth() / 2.0f, -dst.getHeight() / 2.0f);
-            matrix.postRotate(mScreenRotation);
-            matrix.postTranslate(dst.getWidth() / 2.0f, dst.getHeight() / 2.0f);
-        }
-        final Canvas canvas = new Canvas(dst);
-        canvas.drawBitmap(src, matrix, null);
     }
 
 
     @Override
     public void onImageAvailable(final ImageReader reader) {
         Image image = null;
+        PreviewFrame frame = null;
         try {
             image = reader.acquireLatestImage();    // ImageReader 에서image 를 얻어온다
 
             if (image == null) {
                 return;
             }
-            if (mIsComputing) {
+            // 촬영이 끝났으면 repeating request 가 멈출 때까지 들어오는 프레임은 바로 버린다
+            if (mCaptureState.get() >= CAPTURE_COMPLETE) {
+                image.close();
+                return;
+            }
+            // 흔들려서 blur 가 예상되는 프레임은 detection 전에 버린다 (blur 는 detector 입력 픽셀 단위)
+            final float pixelsAcrossSensor = (float) image.getWidth() * INPUT_SIZE
+                    / Math.min(image.getWidth(), image.getHeight());
+            // 버린 프레임 수는 deInitialize 에서 요약으로 남긴다
+            if (mMotionBlurGate.shouldSkip(pixelsAcrossSensor)) {
+                image.close();
+                return;
+            }
+            // 빈 슬롯이 없으면 (정상적으로는 발생하지 않음) 이번 프레임은 버린다
+            frame = mFrameMailbox.acquireForWrite();
+            if (frame == null) {
                 image.close();
                 return;
             }
-            mIsComputing = true;
 
             final Plane[] planes = image.getPlanes();
-            Log.i(TAG, String.format("image size (%d,%d)", image.getWidth(), image.getHeight())); //Original image size (2592,1944) -> 500만 화소
 
-            // 해상도가 알려진 경우 저장소 비트 맵을 한 번 초기화
             if (mPreviewWdith != image.getWidth() || mPreviewHeight != image.getHeight()) {
                 mPreviewWdith = image.getWidth();
                 mPreviewHeight = image.getHeight();
 
-                Log.i(TAG, String.format("Preview size (%d,%d)", mPreviewWdith, mPreviewHeight));
-                mRGBBytes = new int[mPreviewWdith * mPreviewHeight];
-                mRGBframeBitmap = Bitmap.createBitmap(mPreviewWdith, mPreviewHeight, Config.ARGB_8888);
-                mBitmap = Bitmap.createBitmap(INPUT_SIZE, INPUT_SIZE, Config.ARGB_8888);
-
-                mYUVBytes = new byte[planes.length][];
-                for (int i = 0; i < planes.length; ++i) {
-                    mYUVBytes[i] = new byte[planes[i].getBuffer().capacity()];
-                }
+                Log.i(TAG, String.format("Preview size (%d,%d)", mPreviewWdith, mPreviewHeight)); // 예: (2592,1944) -> 500만 화소
             }
 
-            for (int i = 0; i < planes.length; ++i) {
-                planes[i].getBuffer().get(mYUVBytes[i]);
+            // crop + rotate + downscale 를 한 번에 수행: full-resolution ARGB 프레임은 만들지 않는다
+            updateScreenRotation();
+            if (!mFrameSampler.isConfigured(mPreviewWdith, mPreviewHeight, INPUT_SIZE, mScreenRotation, mSamplingFilter)) {
+                mFrameSampler.configure(mPreviewWdith, mPreviewHeight, INPUT_SIZE, mScreenRotation, mSamplingFilter);
             }
 
+            // plane 의 direct ByteBuffer 를 복사하지 않고 image 를 잡고 있는 동안 바로 읽는다
             final int yRowStride = planes[0].getRowStride();
-            final int uvRowStride = planes[1].getRowStride();
-            final int uvPixelStride = planes[1].getPixelStride();
-            ImageUtils.convertYUV420ToARGB8888(
-                    mYUVBytes[0], mYUVBytes[1], mYUVBytes[2], mRGBBytes,
-                    mPreviewWdith,
-                    mPreviewHeight,
-                    yRowStride,
-                    uvRowStride,
-                    uvPixelStride,
-                    false);
+            if (mLumaOnly) {
+                mFrameSampler.sampleLuma(planes[0].getBuffer(), yRowStride, frame.gray);
+            } else {
+                mFrameSampler.sampleArgb(
+                        planes[0].getBuffer(), planes[1].getBuffer(), planes[2].getBuffer(),
+                        yRowStride,
+                        planes[1].getRowStride(),
+                        planes[1].getPixelStride(),
+                        frame.gray,
+                        frame.argb);
+            }
+            frame.grayOnly = mLumaOnly;
+            frame.timestamp = image.getTimestamp();
 
+            // 유일한 소비 단계가 끝났으므로 바로 반환
             image.close();
         } catch (final Exception e) {
             if (image != null) {
                 image.close();
             }
+            if (frame != null) {
+                mFrameMailbox.abandon(frame);
+            }
             Log.i(TAG, "Exception!");
             Trace.endSection();
             return;
         }
 
-        mRGBframeBitmap.setPixels(mRGBBytes, 0, mPreviewWdith, 0, 0, mPreviewWdith, mPreviewHeight);
-        drawResizedBitmap(mRGBframeBitmap, mBitmap);
+        // Bitmap 채우기는 InferenceThread 에서 수행
+        mFrameMailbox.publish(frame);
+        if (mInferenceScheduled.compareAndSet(false, true)) {
+            mInferenceHandler.post(mInferenceRunnable);
+        }
 
-        mInferenceHandler.post(
-                new Runnable(){
-                    @Override
-                    public void run() {
-                        List<VisionDetRet> results;
-                        synchronized (OnGetImageListener.this) {
-                            results = mFaceDet.detect(mBitmap);
-                        }
-                        if (results != null) {
-                            for (final VisionDetRet ret : results) {
-                                /*
-                                //detecting 이미지를 보여준다
-                                Canvas canvas = new Canvas(mBitmap);
-                                ArrayList<Point> landmarks = ret.getFaceLandmarks();
-                                for (int j=0; j<landmarks.size(); j++) {
-                                    Point point = landmarks.get(j);
-                                    if(j>35  && j<42) {     // 왼쪽(36 ~ 41)
-                                        canvas.drawCircle(point.x , point.y, 2, mFaceLandmardkPaint);
-                                    }if(j>41  && j<48){      //오른쪽(42 ~ 47)
-                                        canvas.drawCircle(point.x , point.y, 3, mFaceLandmardkPaint);
-                                    }
-                                }*/
-
-                                CheckQuality quality = new CheckQuality(mBitmap, ret);
-                                quality.setImageScope(false);
-                                quality.setAccept(false);
-
-                                /* -----------------------
-                                * *     눈 영역만 crop
-                                * * ---------------------- */
-                                Bitmap bitCrop_L = Bitmap.createBitmap(mBitmap, ret.mStartLeftX, ret.mStartLeftY, ret.mWidthLeft, ret.mHightLeft);
-                                Bitmap bitCrop_R = Bitmap.createBitmap(mBitmap, ret.mStartRightX, ret.mStartRightY, ret.mWidthRight, ret.mHightRight);
-
-                                Log.i(TAG, String.format("%d: left size (%d,%d)", INPUT_SIZE, bitCrop_L.getWidth(), bitCrop_L.getHeight()));
-                                // Log.i(TAG, String.format("%d: right size (%d,%d)", INPUT_SIZE, bitCrop_L.getWidth(), bitCrop_L.getHeight()));
-
-                                // 몇가지 조건 만족여부 조사
-                                quality.isImageScope();
-                                quality.isBlur(bitCrop_L, bitCrop_R);
-
-                                //if (quality.isAccept() == true && quality.isImageScope()==true) {
-
-                                int sizeLeft = (bitCrop_L.getWidth() * bitCrop_L.getHeight());
-                                int sizeRight = (bitCrop_L.getWidth() * bitCrop_L.getHeight());
-
-                                //if(sizeLeft<40000 && sizeRight<40000){
-
-                                //crop 한 눈 영상 파일로 저장
-                                String left = "left_" + String.valueOf(quality.mBlur_L);
-                                String right = "right_" + String.valueOf(quality.mBlur_R);
-                                //String right = "right_"+String.valueOf(mNumCrop);
-                                //String left = "left_"+String.valueOf(mNumCrop) ;
-
-                                //임시 주석 taein
-                                ImageUtils.saveBitmap(bitCrop_R, right);
-                                ImageUtils.saveBitmap(bitCrop_L, left);
-
-                                try{
-                                    bitmap_right[mNumCrop] = bitCrop_R;
-                                    bitmap_left[mNumCrop] = bitCrop_L;
-                                }catch (ArrayIndexOutOfBoundsException ex){
-                                    ex.printStackTrace();
-                                }
-
-                                mNumCrop = mNumCrop + 1 ;
-
-                                //}
-                                //else{
-                                  //  Log.i(TAG,"Intent에 Bitmap을 put시킬 때, 안드로이드에서는 이미지 크기가 40KB로 제한되어 있다.");
-                                //}
-
-                                //}
-                                /*
-                                try{
-                                    //bitmapCropped = Bitmap.createBitmap(mBitmap, stx ,xty, width, height);
-                                    ByteArrayOutputStream baos = new ByteArrayOutputStream();
-
-                                    StringBuilder sb = new StringBuilder();
-                                    sb.setLength(0);
-
-                                    sb.append(" [roll] : " + mSensorDTO.getRoll())
-                                            .append(" [pitch] : " + mSensorDTO.getPitch())
-                                            .append(" [yaw] : " + mSensorDTO.getYaw())
-                                            .append(" [br] : " + mSensorDTO.getBr());
-
-                                    Dlog.d(sb.toString());
-
-                                    if(mBitmap.compress(Bitmap.CompressFormat.PNG, 100, baos)){
-                                        byte[] imageBytes = baos.toByteArray();
-
-                                        //String encodedImage = Base64.encodeToString(imageBytesimageBytes, Base64.DEFAULT);
-                                        sendPngAndSensorData(imageBytes, "abc", mSensorDTO);
-
-                                        try {
-                                            baos.close();
-                                        } catch (IOException e) {
-                                            e.printStackTrace();
-                                        }
-                                    }
-
-                                }catch (IllegalArgumentException e){
-                                    Dlog.d("Exception Raise : " + e.getMessage());
-                                }
-                                */
-
-                                /*if(눈 오버레이 안에 실제 눈이 들어온 경우){
-                                    mEyeStateChangeHandler.obtainMessage(CameraConnectionFragment.EYE_BOUNDARY_STEADY_STATE).sendToTarget();
-                                }else{
-                                    mEyeStateChangeHandler.obtainMessage(CameraConnectionFragment.EYE_BOUNDARY_UNSTABLE_STATE).sendToTarget();
-                                }*/
-                            }
-                        }
-                        /*
-                        ByteArrayOutputStream baos = new ByteArrayOutputStream();
-                        StringBuilder sb = new StringBuilder();
-                        sb.setLength(0);
-                        sb.append(" [roll] : " + mSensorDTO.getRoll())
-                                .append(" [pitch] : " + mSensorDTO.getPitch())
-                                .append(" [yaw] : " + mSensorDTO.getYaw())
-                                .append(" [br] : " + mSensorDTO.getBr());
-                        Dlog.d(sb.toString());
-                        //mTextView.setText(sb.toString());
-                        if(mBitmap.compress(Bitmap.CompressFormat.PNG, 100, baos)){
-                            byte[] imageBytes = baos.toByteArray();
-                            //String encodedImage = Base64.encodeToString(imageBytesimageBytes, Base64.DEFAULT);
-                            sendPngAndSensorData(imageBytes, "abc", mSensorDTO);
-                        }
-                        */
+        Trace.endSection();
+    }
+
+
+    // 프레임마다 Runnable 을 새로 만들지 않도록 하나를 재사용한다
+    private final Runnable mInferenceRunnable = new Runnable() {
+        @Override
+        public void run() {
+            mInferenceScheduled.set(false);
+            final PreviewFrame frame = mFrameMailbox.take();
+            if (frame == null) {
+                return;
+            }
+            try {
+                processFrame(frame);
+            } finally {
+                mFrameMailbox.release(frame);
+            }
+        }
+    };
+
+
+    // InferenceThread 에서 실행: frame 은 release 될 때까지 이 스레드만 사용한다
+    private void processFrame(final PreviewFrame frame) {
+        if (mCaptureState.get() >= CAPTURE_COMPLETE) {
+            return;
+        }
+        // dlib 은 Bitmap 을 입력으로 받으므로 500x500 결과만 Bitmap 에 쓴다
+        if (frame.grayOnly) {
+            frame.gray.writeTo(frame.bitmap, frame.argb);
+        } else {
+            frame.bitmap.setPixels(frame.argb, 0, INPUT_SIZE, 0, 0, INPUT_SIZE, INPUT_SIZE);
+        }
+        final Bitmap bitmap = frame.bitmap;
+
+        List<VisionDetRet> results;
+        synchronized (OnGetImageListener.this) {
+            results = mFaceDet.detect(bitmap);
+        }
+        if (results != null) {
+            if (mLivenessRequired && !results.isEmpty() && results.get(0).hasEyeLandmarks()) {
+                mBlinkDetector.add((float) CheckQuality.eyeAspectRatio(results.get(0)), frame.timestamp);
+            }
+            for (final VisionDetRet ret : results) {
+                /*
+                //detecting 이미지를 보여준다
+                Canvas canvas = new Canvas(bitmap);
+                ArrayList<Point> landmarks = ret.getFaceLandmarks();
+                for (int j=0; j<landmarks.size(); j++) {
+                    Point point = landmarks.get(j);
+                    if(j>35  && j<42) {     // 왼쪽(36 ~ 41)
+                        canvas.drawCircle(point.x , point.y, 2, mFaceLandmardkPaint);
+                    }if(j>41  && j<48){      //오른쪽(42 ~ 47)
+                        canvas.drawCircle(point.x , point.y, 3, mFaceLandmardkPaint);
+                    }
+                }*/
+
+                if (!mEyeRegionCalculator.compute(ret, bitmap.getWidth(), bitmap.getHeight(), mEyeRegions)) {
+                    Log.i(TAG, "eye region out of frame");
+                    continue;
+                }
 
-                        Bitmap newbitmap = Bitmap.createBitmap(mBitmap, 0 ,mBitmap.getHeight()/2-50, mBitmap.getWidth(), mBitmap.getHeight()/2+50);
-                        //mWindow.setRGBBitmap(newbitmap);
-                        mIsComputing = false;
+                final CheckQuality quality = mQuality;
+                quality.set(bitmap, ret);
+
+                // 몇가지 조건 만족여부 조사: 앞 단계를 통과한 경우에만 다음 단계를 수행
+                final int rejectedBy = mQualityCascade.evaluate(quality, frame.gray, mEyeRegions);
+                // 단계별 탈락 수는 QualityCascade 가 세고 deInitialize 에서 한 번 출력한다
+                if (rejectedBy != QualityCascade.PASSED) {
+                    continue;
+                }
+                if (mLivenessRequired && !mBlinkDetector.isBlinkDetected()) {
+                    continue;
+                }
+                quality.setAccept(true);
+
+                /* -----------------------
+                * *     눈 영역만 crop
+                * * ---------------------- */
+                // 상위 K 개에 들지 못하는 얼굴은 복사하지 않는다
+                final EyeCropPair pair = mBestFrames.begin(quality.getScore(), frame.timestamp);
+                mCaptureState.compareAndSet(CAPTURE_ALIGNING, CAPTURE_COLLECTING);
+                if (pair == null) {
+                    continue;
+                }
+                pair.fill(mCropBuffers, frame.gray, mEyeRegions, quality);
+                mBestFrames.commit(pair);
+
+                //crop 한 눈 영상 파일로 저장, 파일 이름은 PNG 로 쓸 때만 만든다
+                final String left = mWritingArchive ? null : "left_" + String.valueOf(quality.mBlur_L);
+                final String right = mWritingArchive ? null : "right_" + String.valueOf(quality.mBlur_R);
+
+                //임시 주석 taein
+                final CropMetadata meta = mCropMetadata;
+                meta.timestamp = frame.timestamp;
+                meta.label = mLabel;
+                meta.ear = (float) quality.mEar;
+                meta.score = (float) quality.getScore();
+                meta.yaw = quality.mPose.yaw;
+                meta.pitch = quality.mPose.pitch;
+                meta.roll = quality.mPose.roll;
+                meta.setSensor(mSensorDTO);
+                meta.side = CropMetadata.SIDE_RIGHT;
+                meta.blur = (float) quality.mBlur_R;
+                mCropWriter.submit(pair.right, right, meta);
+                meta.side = CropMetadata.SIDE_LEFT;
+                meta.blur = (float) quality.mBlur_L;
+                mCropWriter.submit(pair.left, left, meta);
+
+                // 모델 로딩이 끝나기 전에는 결과 화면에서 verification 한다
+                if (mStreamingVerification && mClassifier.isLoaded()) {
+                    mClassifier.verifyPair(pair.left, pair.right, pair.probabilities);
+                    pair.verified = true;
+                    if (mEvidence.add(pair.probabilities) != VerificationEvidence.PENDING) {
+                        Log.i(TAG, mEvidence.getSummary());
+                        break;
                     }
-                });
+                }
 
-        Trace.endSection();
+                //}
+                //else{
+                  //  Log.i(TAG,"Intent에 Bitmap을 put시킬 때, 안드로이드에서는 이미지 크기가 40KB로 제한되어 있다.");
+                //}
+
+                //}
+                /*
+                try{
+                    //bitmapCropped = Bitmap.createBitmap(bitmap, stx ,xty, width, height);
+                    ByteArrayOutputStream baos = new ByteArrayOutputStream();
+
+                    StringBuilder sb = new StringBuilder();
+                    sb.setLength(0);
+
+                    sb.append(" [roll] : " + mSensorDTO.getRoll())
+                            .append(" [pitch] : " + mSensorDTO.getPitch())
+                            .append(" [yaw] : " + mSensorDTO.getYaw())
+                            .append(" [br] : " + mSensorDTO.getBr());
+
+                    Dlog.d(sb.toString());
+
+                    if(bitmap.compress(Bitmap.CompressFormat.PNG, 100, baos)){
+                        byte[] imageBytes = baos.toByteArray();
+
+                        //String encodedImage = Base64.encodeToString(imageBytesimageBytes, Base64.DEFAULT);
+                        sendPngAndSensorData(imageBytes, "abc", mSensorDTO);
+
+                        try {
+                            baos.close();
+                        } catch (IOException e) {
+                            e.printStackTrace();
+                        }
+                    }
+
+                }catch (IllegalArgumentException e){
+                    Dlog.d("Exception Raise : " + e.getMessage());
+                }
+                */
+
+                /*if(눈 오버레이 안에 실제 눈이 들어온 경우){
+                    mEyeStateChangeHandler.obtainMessage(CameraConnectionFragment.EYE_BOUNDARY_STEADY_STATE).sendToTarget();
+                }else{
+                    mEyeStateChangeHandler.obtainMessage(CameraConnectionFragment.EYE_BOUNDARY_UNSTABLE_STATE).sendToTarget();
+                }*/
+            }
+        }
+        /*
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        StringBuilder sb = new StringBuilder();
+        sb.setLength(0);
+        sb.append(" [roll] : " + mSensorDTO.getRoll())
+                .append(" [pitch] : " + mSensorDTO.getPitch())
+                .append(" [yaw] : " + mSensorDTO.getYaw())
+                .append(" [br] : " + mSensorDTO.getBr());
+        Dlog.d(sb.toString());
+        //mTextView.setText(sb.toString());
+        if(bitmap.compress(Bitmap.CompressFormat.PNG, 100, baos)){
+            byte[] imageBytes = baos.toByteArray();
+            //String encodedImage = Base64.encodeToString(imageBytesimageBytes, Base64.DEFAULT);
+            sendPngAndSensorData(imageBytes, "abc", mSensorDTO);
+        }
+        */
+
+        // 결정 (또는 실패) 이 났거나 best-frame 수집이 끝나면 촬영 종료
+        if ((mEvidence.getStatus() != VerificationEvidence.PENDING || mBestFrames.isComplete(frame.timestamp))
+                && mCaptureState.compareAndSet(CAPTURE_COLLECTING, CAPTURE_COMPLETE)) {
+            final CaptureSession session = mBestFrames.toSession(mLabel);
+            session.setVerification(mEvidence);
+            Log.i(TAG, String.format("best %d of %d crops selected", session.size(), mBestFrames.getCandidateCount()));
+            mBestFrames.reset();
+            mEvidence.reset();
+            completeCapture(session);
+        }
+    }
+
+
+    // InferenceThread: 대기 중인 프레임과 예약된 추론을 버리고 결과를 한 번만 넘긴다
+    private void completeCapture(CaptureSession session) {
+        mFrameMailbox.clear();
+        mInferenceHandler.removeCallbacks(mInferenceRunnable);
+        mInferenceScheduled.set(false);
+
+        final OnCaptureCompleteListener listener = mCaptureCompleteListener;
+        if (listener == null) {
+            Log.w(TAG, "capture complete but nobody is listening");
+            return;
+        }
+        if (mCaptureState.compareAndSet(CAPTURE_COMPLETE, CAPTURE_HANDED_OFF)) {
+            listener.onCaptureComplete(session);
+        }
     }
 
     /**
@@ -0,0 +1,39 @@
+package com.tzutalin.dlibtest;
+
+import android.graphics.Bitmap;
+
+/**
+ * One preallocated slot of the {@link FrameMailbox} ring: the detector input of a single
+ * preview frame. Only the thread that currently owns the slot may touch its buffers.
+ */
+public class PreviewFrame {
+
+    final int index;
+    final GrayFrame gray;
+    // colour pixels written by FrameSampler in the ARGB mode, scratch for the gray expansion otherwise
+    final int[] argb;
+    final Bitmap bitmap;
+
+    // true when only gray was written and bitmap still has to be expanded from it
+    boolean grayOnly;
+    long timestamp;
+
+    PreviewFrame(int index, int size) {
+        this.index = index;
+        this.gray = new GrayFrame(size, size);
+        this.argb = new int[size * size];
+        this.bitmap = Bitmap.createBitmap(size, size, Bitmap.Config.ARGB_8888);
+    }
+
+    public GrayFrame getGray() {
+        return gray;
+    }
+
+    public Bitmap getBitmap() {
+        return bitmap;
+    }
+
+    public long getTimestamp() {
+        return timestamp;
+    }
+}
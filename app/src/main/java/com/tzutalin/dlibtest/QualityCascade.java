@@ -0,0 +1,156 @@
+package com.tzutalin.dlibtest;
+
+import com.tzutalin.dlib.EyeRegions;
+
+import java.util.Locale;
+
+/**
+ * Ordered quality gates for one detected face. A gate runs only if every earlier gate
+ * passed, so eye crops are cut only for faces that will be kept. Each gate counts
+ * passes, rejects and the time spent in it.
+ * Thresholds are starting points; use the counters to tune them and the order.
+ */
+public class QualityCascade {
+
+    public static final int GATE_GEOMETRY = 0;
+    public static final int GATE_EXPOSURE = 1;
+    public static final int GATE_EYE_OPENNESS = 2;
+    public static final int GATE_SHARPNESS = 3;
+    public static final int GATE_HEAD_POSE = 4;
+    public static final int GATE_COUNT = 5;
+
+    /** Returned by {@link #evaluate} when every gate passed */
+    public static final int PASSED = -1;
+
+    private static final String[] GATE_NAMES = {"geometry", "exposure", "eye openness", "sharpness", "head pose"};
+
+    // head pose and eye openness read values computed from landmarks, so they run before any pixel is touched
+    private int[] mOrder = {GATE_GEOMETRY, GATE_HEAD_POSE, GATE_EYE_OPENNESS, GATE_EXPOSURE, GATE_SHARPNESS};
+
+    // exposure
+    private double mMinMean = 30;
+    private double mMaxMean = 230;
+    private double mMinContrast = 8;
+    private double mMaxSaturated = 0.05;
+    // eye openness: eye aspect ratio, open eyes are around 0.3
+    private double mMinEar = 0.2;
+    // sharpness: standard deviation of the Laplacian
+    private double mMinBlur = 3;
+    // head pose, degrees
+    private float mMaxYaw = 20;
+    private float mMaxPitch = 20;
+    private float mMaxRoll = 15;
+
+    private final long[] mPassCount = new long[GATE_COUNT];
+    private final long[] mRejectCount = new long[GATE_COUNT];
+    private final long[] mNanos = new long[GATE_COUNT];
+
+    /**
+     * Runs the gates in order until one rejects.
+     * @param quality face to check, already {@link CheckQuality#set set}
+     * @param gray    luma of the frame the face was detected on
+     * @param eyes    clamped eye boxes of the face
+     * @return the rejecting gate, or {@link #PASSED}
+     */
+    public int evaluate(CheckQuality quality, GrayFrame gray, EyeRegions eyes) {
+        for (final int gate : mOrder) {
+            final long start = System.nanoTime();
+            final boolean pass = runGate(gate, quality, gray, eyes);
+            mNanos[gate] += System.nanoTime() - start;
+            if (!pass) {
+                mRejectCount[gate]++;
+                return gate;
+            }
+            mPassCount[gate]++;
+        }
+        return PASSED;
+    }
+
+    private boolean runGate(int gate, CheckQuality quality, GrayFrame gray, EyeRegions eyes) {
+        switch (gate) {
+            case GATE_GEOMETRY:
+                return quality.isImageScope();
+            case GATE_EXPOSURE:
+                quality.measureEyes(gray, eyes.left, eyes.right);
+                return quality.isExposed(mMinMean, mMaxMean, mMinContrast, mMaxSaturated);
+            case GATE_EYE_OPENNESS:
+                return quality.isEyeOpen(mMinEar);
+            case GATE_HEAD_POSE:
+                return quality.isFrontal(mMaxYaw, mMaxPitch, mMaxRoll);
+            case GATE_SHARPNESS:
+                // Laplacian 은 exposure 와 같은 pass 에서 계산된다
+                quality.measureEyes(gray, eyes.left, eyes.right);
+                return quality.isSharp(mMinBlur);
+            default:
+                throw new IllegalArgumentException("Unknown gate: " + gate);
+        }
+    }
+
+    /**
+     * Changes the order of the gates. Every gate must appear exactly once.
+     */
+    public void setOrder(int... gates) {
+        if (gates.length != GATE_COUNT) {
+            throw new IllegalArgumentException("Expected " + GATE_COUNT + " gates, got " + gates.length);
+        }
+        final boolean[] seen = new boolean[GATE_COUNT];
+        for (final int gate : gates) {
+            if (gate < 0 || gate >= GATE_COUNT || seen[gate]) {
+                throw new IllegalArgumentException("Invalid or repeated gate: " + gate);
+            }
+            seen[gate] = true;
+        }
+        mOrder = gates.clone();
+    }
+
+    public void setExposureLimits(double minMean, double maxMean, double minContrast, double maxSaturated) {
+        mMinMean = minMean;
+        mMaxMean = maxMean;
+        mMinContrast = minContrast;
+        mMaxSaturated = maxSaturated;
+    }
+
+    public void setMinEar(double minEar) {
+        mMinEar = minEar;
+    }
+
+    public void setMinBlur(double minBlur) {
+        mMinBlur = minBlur;
+    }
+
+    public void setPoseLimits(float maxYaw, float maxPitch, float maxRoll) {
+        mMaxYaw = maxYaw;
+        mMaxPitch = maxPitch;
+        mMaxRoll = maxRoll;
+    }
+
+    public long getPassCount(int gate) {
+        return mPassCount[gate];
+    }
+
+    public long getRejectCount(int gate) {
+        return mRejectCount[gate];
+    }
+
+    public long getNanos(int gate) {
+        return mNanos[gate];
+    }
+
+    public static String getGateName(int gate) {
+        return GATE_NAMES[gate];
+    }
+
+    /**
+     * @return one line per gate in evaluation order: pass / reject counts and mean time
+     */
+    public String getSummary() {
+        final StringBuilder sb = new StringBuilder();
+        for (final int gate : mOrder) {
+            final long runs = mPassCount[gate] + mRejectCount[gate];
+            sb.append(String.format(Locale.US, "%s: pass %d, reject %d, %.1f us/run%n",
+                    GATE_NAMES[gate], mPassCount[gate], mRejectCount[gate],
+                    runs == 0 ? 0.0 : mNanos[gate] / 1000.0 / runs));
+        }
+        return sb.toString();
+    }
+}
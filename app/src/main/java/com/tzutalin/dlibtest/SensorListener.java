@@ -33,10 +33,36 @@ public class SensorListener implements SensorEventListener {
     private static Handler mHandler;
     private SensorDTO mSensorDto = new SensorDTO();
 
+    // 최근 각속도 (rad/s): MotionBlurGate 가 카메라 쪽 스레드에서 읽는다
+    private static volatile float sPanTiltSpeed;
+    private static volatile float sRollSpeed;
+    private static volatile long sGyroTimestamp;
+
     public static void setHandler(Handler handler) {
         mHandler = handler;
     }
 
+    /**
+     * @return angular speed around the device x and y axes of the latest gyro sample, rad/s
+     */
+    public static float getPanTiltSpeed() {
+        return sPanTiltSpeed;
+    }
+
+    /**
+     * @return angular speed around the device z axis (the front camera's optical axis), rad/s
+     */
+    public static float getRollSpeed() {
+        return sRollSpeed;
+    }
+
+    /**
+     * @return timestamp of the latest gyro sample (SensorEvent#timestamp), ns
+     */
+    public static long getGyroTimestamp() {
+        return sGyroTimestamp;
+    }
+
     @Override
     public void onSensorChanged(SensorEvent event) {
 
@@ -53,6 +79,10 @@ public class SensorListener implements SensorEventListener {
             double gyroY = event.values[1];
             double gyroZ = event.values[2];
 
+            sPanTiltSpeed = (float) Math.sqrt(gyroX * gyroX + gyroY * gyroY);
+            sRollSpeed = (float) Math.abs(gyroZ);
+            sGyroTimestamp = event.timestamp;
+
             /* 각속도를 적분하여 회전각을 추출하기 위해 적분 간격(dt)을 구한다.
              * dt : 센서가 현재 상태를 감지하는 시간 간격
              * NS2S : nano second -> second */
@@ -2,8 +2,6 @@ package com.tzutalin.dlibtest;
 
 import android.content.res.AssetManager;
 import android.graphics.Bitmap;
-import android.graphics.Color;
-import android.os.Bundle;
 import android.support.v4.os.TraceCompat;
 import android.util.Log;
 
@@ -12,7 +10,9 @@ import org.tensorflow.contrib.android.TensorFlowInferenceInterface;
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStreamReader;
-import java.util.ArrayList;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
 import java.util.Vector;
 import java.util.concurrent.Executor;
 import java.util.concurrent.Executors;
@@ -36,19 +36,19 @@ public class TensorFlowClassifier {
     private static final int MAX_RESULTS = 3;  // result 개수 제한
     private static final float THRESHOLD = 0.1f;  // outputs 값의 threshold 설정
     public static final int MULTISCALE_CNT = 3;
+    public static final int NUM_CLASSES = 7;
 
     public static final int[] WIDTHS = {160, 200, 240};
     public static final int[] HEIGHTS = {60, 80, 100};
 
-    float[] lowRightData = new float[WIDTHS[0] * HEIGHTS[0]];
-    float[] midRightData = new float[WIDTHS[1] * HEIGHTS[1]];
-    float[] highRightData = new float[WIDTHS[2] * HEIGHTS[2]];
-    float[] lowLeftData = new float[WIDTHS[0] * HEIGHTS[0]];
-    float[] midLeftData = new float[WIDTHS[1] * HEIGHTS[1]];
-    float[] highLeftData = new float[WIDTHS[2] * HEIGHTS[2]];
-
-    Bitmap bitmap_left[] = new Bitmap[5];
-    Bitmap bitmap_right[] = new Bitmap[5];
+    // batch 입력: crop 하나에서 세 scale 을 한 번에 만들어 direct buffer 에 N 장씩 담는다
+    private EyeTensorPreprocessor rightPreprocessor;
+    private EyeTensorPreprocessor leftPreprocessor;
+    // batch 출력: softmax 를 받는 direct buffer 와 오른쪽 + 왼쪽 합 (N 이 커질 때만 다시 할당)
+    private FloatBuffer batchOutputs;
+    private float[] batchScores = new float[0];
+    // graph 가 batch 크기 1 로 고정된 경우 한 번 실패한 뒤로는 쌍마다 실행
+    private boolean batchSupported = true;
 
     // neural network 관련 parameters
     private String[] rightInputNames;  // neural network right 입력 노드 이름
@@ -57,16 +57,35 @@ public class TensorFlowClassifier {
     private int[] widths;  // 입력 이미지 가로 길이
     private int[] heights;  // 입력 이미지 세로 길이
     private Vector<String> labels = new Vector<>();  // label 정보
-    private int numClasses = 7;
-    private float[][] logits = new float[2][numClasses];  // logit 정보
+    private int numClasses = NUM_CLASSES;
     private boolean runStats = false;
 
-    private TensorFlowInferenceInterface tii;
+    // 모델 로딩은 별도 executor 에서 끝나므로 volatile
+    private volatile InferenceGraph graph;
 
     private static AssetManager mAssetManager;
 
+    /**
+     * The part of {@link TensorFlowInferenceInterface} the classifier uses, so tests can
+     * run it on a fake graph.
+     */
+    interface InferenceGraph {
+        void feed(String inputName, FloatBuffer src, long... dims);
+
+        void run(String[] outputNames, boolean enableStats);
+
+        void fetch(String outputName, FloatBuffer dst);
+    }
+
     private TensorFlowClassifier() {}
 
+    // 테스트용: 모델 파일 없이 graph 를 바꿔 끼운다
+    TensorFlowClassifier(InferenceGraph graph, int[] widths, int[] heights,
+                         String[] rightInputNames, String[] leftInputNames, String[] outputNames) {
+        setInputs(widths, heights, rightInputNames, leftInputNames, outputNames);
+        this.graph = graph;
+    }
+
     private static class SingleToneHolder {
         static final TensorFlowClassifier instance = new TensorFlowClassifier();
     }
@@ -106,6 +125,14 @@ public class TensorFlowClassifier {
     }
 
 
+    /**
+     * @return true once the model has been loaded by {@link #initTensorFlowAndLoadModel}
+     */
+    public boolean isLoaded() {
+        return graph != null;
+    }
+
+
     /**
      * 텐서플로우 classifier 생성 관련 초기화 함수
      * @param assetManager
@@ -126,11 +153,7 @@ public class TensorFlowClassifier {
             String[] rightInputNames,
             String[] leftInputNames,
             String[] outputNames) {
-        this.rightInputNames = rightInputNames;
-        this.leftInputNames = leftInputNames;
-        this.outputNames = outputNames;
-        this.widths = widhts;
-        this.heights = heights;
+        setInputs(widhts, heights, rightInputNames, leftInputNames, outputNames);
 
         // label names 설정
         BufferedReader br = null;
@@ -151,115 +174,181 @@ public class TensorFlowClassifier {
             }
         }
 
-        this.tii = new TensorFlowInferenceInterface(assetManager, modelFilename);
+        final TensorFlowInferenceInterface tii = new TensorFlowInferenceInterface(assetManager, modelFilename);
+        this.graph = new InferenceGraph() {
+            @Override
+            public void feed(String inputName, FloatBuffer src, long... dims) {
+                tii.feed(inputName, src, dims);
+            }
+
+            @Override
+            public void run(String[] outputNames, boolean enableStats) {
+                tii.run(outputNames, enableStats);
+            }
+
+            @Override
+            public void fetch(String outputName, FloatBuffer dst) {
+                tii.fetch(outputName, dst);
+            }
+        };
+    }
+
+
+    private void setInputs(int[] widths, int[] heights,
+                           String[] rightInputNames, String[] leftInputNames, String[] outputNames) {
+        this.rightInputNames = rightInputNames;
+        this.leftInputNames = leftInputNames;
+        this.outputNames = outputNames;
+        this.widths = widths;
+        this.heights = heights;
+        this.rightPreprocessor = new EyeTensorPreprocessor(widths, heights, OnGetImageListener.BEST_FRAME_COUNT);
+        this.leftPreprocessor = new EyeTensorPreprocessor(widths, heights, OnGetImageListener.BEST_FRAME_COUNT);
     }
 
 
     /**
-     * 오른쪽/왼쪽 눈에 대한 verification 을 수행하는 함수
-     * @param lowRightData
-     * @param midRightData
-     * @param highRightData
-     * @param lowLeftData
-     * @param midLeftData
-     * @param highLeftData
-     * @return
+     * 한 쌍의 gray 눈 crop 을 세 scale 로 맞춰 verification 을 수행하는 함수
+     * (촬영 중 InferenceThread 에서 호출되므로 입력 buffer 와 함께 동기화)
+     * @param out 오른쪽 + 왼쪽 softmax 합을 받을 배열 (NUM_CLASSES 개)
      */
-    public float[] verificationEye(float[] lowRightData, float[] midRightData, float[] highRightData,
-                               float[] lowLeftData, float[] midLeftData, float[] highLeftData) {
-        long startTime = System.currentTimeMillis();
+    public synchronized void verifyPair(GrayFrame left, GrayFrame right, float[] out) {
+        this.rightPreprocessor.process(right, 0);
+        this.leftPreprocessor.process(left, 0);
+        runBatch(1);
+        System.arraycopy(this.batchScores, 0, out, 0, this.numClasses);
+    }
 
-        TraceCompat.beginSection("verificationEye");
 
-        TraceCompat.beginSection("feed");
-        for (int i = 0; i < this.widths.length; i++) {
-            if (i == 0) {
-                tii.feed(this.rightInputNames[i], lowRightData, 1, this.heights[i], this.widths[i], 1);
-                tii.feed(this.leftInputNames[i], lowLeftData, 1, this.heights[i], this.widths[i], 1);
-            } else if (i == 1) {
-                tii.feed(this.rightInputNames[i], midRightData, 1, this.heights[i], this.widths[i], 1);
-                tii.feed(this.leftInputNames[i], midLeftData, 1, this.heights[i], this.widths[i], 1);
-            } else {
-                tii.feed(this.rightInputNames[i], highRightData, 1, this.heights[i], this.widths[i], 1);
-                tii.feed(this.leftInputNames[i], highLeftData, 1, this.heights[i], this.widths[i], 1);
+    /**
+     * 여러 쌍의 gray 눈 crop 을 scale 별 batch 하나로 묶어 graph 를 한 번만 실행하는 함수
+     * (feed 6 번, run 1 번, fetch 2 번이 N 쌍 전체에 대해 한 번씩)
+     * @param lefts  왼쪽 눈 crop
+     * @param rights 오른쪽 눈 crop
+     * @param count  앞에서부터 사용할 쌍의 개수
+     * @return 쌍마다 오른쪽 + 왼쪽 softmax 합
+     */
+    public synchronized float[][] verificationEyeBatch(GrayFrame[] lefts, GrayFrame[] rights, int count) {
+        final float[][] results = new float[count][this.numClasses];
+        if (count == 0) {
+            return results;
+        }
+        if (!this.batchSupported) {
+            for (int n = 0; n < count; n++) {
+                verifyPair(lefts[n], rights[n], results[n]);
             }
+            return results;
         }
-//        tii.feed("right/input_scope/is_training", new boolean[]{false}, 1);
-//        tii.feed("left/input_scope/is_training", new boolean[]{false}, 1);
-        TraceCompat.endSection();
 
-        TraceCompat.beginSection("run");
-        tii.run(this.outputNames, this.runStats);
+        TraceCompat.beginSection("verificationEyeBatch");
+
+        TraceCompat.beginSection("preprocess");
+        this.rightPreprocessor.ensureCapacity(count);
+        this.leftPreprocessor.ensureCapacity(count);
+        for (int n = 0; n < count; n++) {
+            this.rightPreprocessor.process(rights[n], n);
+            this.leftPreprocessor.process(lefts[n], n);
+        }
         TraceCompat.endSection();
 
-        TraceCompat.beginSection("fetch");
-        for (int i = 0; i < this.outputNames.length; i++) {
-            float[] outputs = new float[this.numClasses];
-            tii.fetch(this.outputNames[i], outputs);
-            for (int j = 0; j < this.numClasses; j++) {
-                this.logits[i][j] = outputs[j];
-            }
+        try {
+            runBatch(count);
+        } catch (IllegalArgumentException e) {
+            // runBatch 의 section 은 모두 닫혔으므로 바깥 "verificationEyeBatch" 를 닫고 다시 시작
+            TraceCompat.endSection();
+            Log.w(TAG, "graph does not accept a batch of " + count + ", verifying pair by pair", e);
+            this.batchSupported = false;
+            return verificationEyeBatch(lefts, rights, count);
+        }
+        for (int n = 0; n < count; n++) {
+            System.arraycopy(this.batchScores, n * this.numClasses, results[n], 0, this.numClasses);
         }
+
         TraceCompat.endSection();
+        return results;
+    }
+
 
-        float[] result = {0f, 0f, 0f, 0f, 0f, 0f, 0f};
-        for (int j = 0; j < this.logits[0].length; j++) {
-            for (int i = 0; i < this.logits.length; i++) {
-                result[j] += this.logits[i][j];
-                Log.d(TAG, this.logits[i][j]+"");
+    // 전처리된 앞의 count 장으로 graph 를 한 번 실행하고 오른쪽 + 왼쪽 softmax 합을 batchScores 에 둔다
+    private void runBatch(int count) {
+        final InferenceGraph graph = this.graph;
+        TraceCompat.beginSection("feed");
+        try {
+            for (int i = 0; i < this.widths.length; i++) {
+                graph.feed(this.rightInputNames[i], this.rightPreprocessor.getInput(i, count),
+                        count, this.heights[i], this.widths[i], 1);
+                graph.feed(this.leftInputNames[i], this.leftPreprocessor.getInput(i, count),
+                        count, this.heights[i], this.widths[i], 1);
             }
+        } finally {
+            TraceCompat.endSection();
         }
 
-        String temp = "";
-        for (int i = 0; i < result.length; i++) {
-            temp += result[i] + ",";
+        TraceCompat.beginSection("run");
+        try {
+            graph.run(this.outputNames, this.runStats);
+        } finally {
+            TraceCompat.endSection();
         }
-        Log.d(TAG, temp);
-        /*
-        float maxValue = -1;
-        int maxIndex = -1;
-        for (int i = 0; i < this.numClasses; i++) {
-            if (maxValue < result[i]) {
-                maxValue = result[i];
-                maxIndex = i;
+
+        TraceCompat.beginSection("fetch");
+        try {
+            final int size = count * this.numClasses;
+            if (this.batchScores.length < size) {
+                this.batchScores = new float[size];
+                this.batchOutputs = ByteBuffer.allocateDirect(size * 4).order(ByteOrder.nativeOrder()).asFloatBuffer();
+            }
+            for (int j = 0; j < size; j++) {
+                this.batchScores[j] = 0;
             }
+            for (int i = 0; i < this.outputNames.length; i++) {
+                this.batchOutputs.clear();
+                this.batchOutputs.limit(size);
+                graph.fetch(this.outputNames[i], this.batchOutputs);
+                for (int j = 0; j < size; j++) {
+                    this.batchScores[j] += this.batchOutputs.get(j);
+                }
+            }
+        } finally {
+            TraceCompat.endSection();
         }
-        long endTime = System.currentTimeMillis();
-
-
-        return maxIndex;
-        */
-        return result;
     }
 
 
-    public ResultProbList Verification(Bundle bundle) {
+    public ResultProbList Verification(CaptureSession session) {
         long startTime = System.currentTimeMillis();
 
-        ParcelBitmapList leftList = new ParcelBitmapList();
-        ParcelBitmapList rightList = new ParcelBitmapList();
-
-        ArrayList<ParcelBitmap> left = bundle.getParcelableArrayList("LeftEyeList");
-        ArrayList<ParcelBitmap> right = bundle.getParcelableArrayList("RightEyeList");
-
-        // 리스트에서 이미지 꺼내오기
-        for (int num = 0; num < 5; num++) {
-            ParcelBitmap addData = left.get(num);
-            bitmap_left[num] = addData.getBitmap();
+        ResultProbList resultList = new ResultProbList();
 
-            ParcelBitmap addDataa = right.get(num);
-            bitmap_right[num] = addDataa.getBitmap();
+        // 촬영 중에 verification 되지 않은 crop 만 모아 한 번에 실행
+        final GrayFrame[] lefts = new GrayFrame[session.size()];
+        final GrayFrame[] rights = new GrayFrame[session.size()];
+        final int[] pending = new int[session.size()];
+        int count = 0;
+        for (int num = 0; num < session.size(); num++) {
+            if (session.getProbabilities(num) == null) {
+                lefts[count] = session.getLeftCrop(num);
+                rights[count] = session.getRightCrop(num);
+                pending[count++] = num;
+            }
+        }
+        final float[][] batchResults = verificationEyeBatch(lefts, rights, count);
+        final float[][] probabilities = new float[session.size()][];
+        for (int k = 0; k < count; k++) {
+            probabilities[pending[k]] = batchResults[k];
         }
 
-        ResultProbList resultList = new ResultProbList();
-
-        for (int num = 0; num < 5; num++) {
+        // session 의 crop 을 그대로 사용 (품질 순)
+        for (int num = 0; num < session.size(); num++) {
             ResultProb resultPro = new ResultProb();
 
-            Bitmap oriLeftBitmap = bitmap_left[num];
-            Bitmap oriRightBitmap = bitmap_right[num];
+            Bitmap oriLeftBitmap = session.getLeftBitmap(num);
+            Bitmap oriRightBitmap = session.getRightBitmap(num);
 
-            float[] tempResult = verificationEye(lowRightData, midRightData, highRightData, lowLeftData, midLeftData, highLeftData);
+            // 촬영 중에 이미 verification 된 crop 은 다시 돌리지 않는다
+            float[] tempResult = session.getProbabilities(num);
+            if (tempResult == null) {
+                tempResult = probabilities[num];
+            }
             resultPro.setBitmap(oriLeftBitmap, oriRightBitmap);
             resultPro.setProbResult(tempResult);
             resultList.add(resultPro);
@@ -271,24 +360,4 @@ public class TensorFlowClassifier {
 
         return resultList;
     }
-
-
-    private static float[] grayScaleAndNorm(Bitmap bitmap) {
-        int mWidth = bitmap.getWidth();
-        int mHeight = bitmap.getHeight();
-
-        int[] ori_pixels = new int[mWidth * mHeight];
-        float[] norm_pixels = new float[mWidth * mHeight];
-
-        bitmap.getPixels(ori_pixels, 0, mWidth, 0, 0, mWidth, mHeight);
-        for (int i = 0; i < ori_pixels.length; i++) {
-            int alpha = Color.alpha(ori_pixels[i]);
-//            int grayPixel = (int) ((Color.red(ori_pixels[i]) * 0.2126) + (Color.green(ori_pixels[i]) * 0.7152) + (Color.blue(ori_pixels[i]) * 0.0722));
-            int grayPixel = (int) ((Color.red(ori_pixels[i]) * 0.299) + (Color.green(ori_pixels[i]) * 0.587) + (Color.blue(ori_pixels[i]) * 0.114));  // decode_png -> grayscale 변환과 일치
-            if (grayPixel < 0) grayPixel = 0;
-            if (grayPixel > 255) grayPixel = 255;
-            norm_pixels[i] = grayPixel / 255.0f;
-        }
-        return norm_pixels;
-    }
-}
\ No newline at end of file
+}
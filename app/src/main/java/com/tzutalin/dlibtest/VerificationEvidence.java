@@ -0,0 +1,129 @@
+package com.tzutalin.dlibtest;
+
+import java.util.Locale;
+
+/**
+ * Accumulates classifier outputs of the eye pairs verified during a capture and decides
+ * as soon as they agree. Each pair adds the log of its class probabilities, so the
+ * difference between the two strongest classes is their summed log likelihood ratio.
+ * The capture is decided when that margin reaches the threshold, which a single clear
+ * pair can do, and fails when the pair budget is used up first.
+ * Not thread safe; use it from the thread that runs the classifier.
+ */
+public class VerificationEvidence {
+
+    public static final int PENDING = 0;
+    public static final int DECIDED = 1;
+    public static final int FAILED = 2;
+
+    // ln(20): 한 쌍만으로 결정하려면 1등 클래스가 2등보다 20 배 이상 높아야 한다
+    public static final float DEFAULT_MARGIN = 3f;
+    public static final int DEFAULT_MAX_PAIRS = 8;
+    // 확률 0 인 클래스 하나가 증거 전체를 -inf 로 만들지 않도록
+    private static final double MIN_PROBABILITY = 1e-4;
+
+    private final double[] mLogEvidence;
+    private float mMargin = DEFAULT_MARGIN;
+    private int mMaxPairs = DEFAULT_MAX_PAIRS;
+
+    private int mCount;
+    private int mStatus;
+    private int mBestClass;
+    private double mBestMargin;
+
+    public VerificationEvidence(int numClasses) {
+        mLogEvidence = new double[numClasses];
+        reset();
+    }
+
+    /**
+     * @param margin   log likelihood ratio between the best and the second class needed to decide
+     * @param maxPairs pairs to verify before the capture fails
+     */
+    public void setLimits(float margin, int maxPairs) {
+        if (maxPairs <= 0) {
+            throw new IllegalArgumentException("maxPairs must be positive: " + maxPairs);
+        }
+        mMargin = margin;
+        mMaxPairs = maxPairs;
+    }
+
+    /**
+     * Adds the class scores of one pair. The scores are normalized to sum to one, so the
+     * summed left + right softmax of {@link TensorFlowClassifier} can be passed as is.
+     * @return the status after this pair; pairs added after a decision are ignored
+     */
+    public int add(float[] scores) {
+        if (mStatus != PENDING) {
+            return mStatus;
+        }
+        double sum = 0;
+        for (int c = 0; c < mLogEvidence.length; c++) {
+            sum += scores[c];
+        }
+        if (sum <= 0) {
+            return mStatus;
+        }
+        for (int c = 0; c < mLogEvidence.length; c++) {
+            mLogEvidence[c] += Math.log(Math.max(scores[c] / sum, MIN_PROBABILITY));
+        }
+        mCount++;
+
+        int best = 0;
+        for (int c = 1; c < mLogEvidence.length; c++) {
+            if (mLogEvidence[c] > mLogEvidence[best]) {
+                best = c;
+            }
+        }
+        double second = Double.NEGATIVE_INFINITY;
+        for (int c = 0; c < mLogEvidence.length; c++) {
+            if (c != best && mLogEvidence[c] > second) {
+                second = mLogEvidence[c];
+            }
+        }
+        mBestClass = best;
+        mBestMargin = mLogEvidence.length > 1 ? mLogEvidence[best] - second : Double.POSITIVE_INFINITY;
+
+        if (mBestMargin >= mMargin) {
+            mStatus = DECIDED;
+        } else if (mCount >= mMaxPairs) {
+            mStatus = FAILED;
+        }
+        return mStatus;
+    }
+
+    public int getStatus() {
+        return mStatus;
+    }
+
+    /**
+     * @return the class with the most evidence so far, or -1 before the first pair
+     */
+    public int getBestClass() {
+        return mBestClass;
+    }
+
+    public float getMargin() {
+        return (float) mBestMargin;
+    }
+
+    public int getCount() {
+        return mCount;
+    }
+
+    public void reset() {
+        for (int c = 0; c < mLogEvidence.length; c++) {
+            mLogEvidence[c] = 0;
+        }
+        mCount = 0;
+        mStatus = PENDING;
+        mBestClass = -1;
+        mBestMargin = 0;
+    }
+
+    public String getSummary() {
+        final String status = mStatus == DECIDED ? "decided" : mStatus == FAILED ? "failed" : "pending";
+        return String.format(Locale.US, "verification %s after %d pairs: class %d, margin %.2f",
+                status, mCount, mBestClass, mBestMargin);
+    }
+}
@@ -0,0 +1,141 @@
+package com.tzutalin.dlibtest;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Heap ordering, eviction and crop buffer ownership of {@link BestFrameSelector}.
+ * Crops are stamped with their candidate number so the session can be traced back.
+ */
+public class BestFrameSelectorTest {
+
+    private static final int K = 5;
+    private static final long MS = 1000000L;
+
+    private final CropBufferPool mBuffers = new CropBufferPool();
+    private final BestFrameSelector mSelector = new BestFrameSelector(K, 100, 1000, mBuffers);
+
+    @Test
+    public void keepsTheBestKInDescendingOrder() {
+        final Random random = new Random(7);
+        final double[] scores = new double[40];
+        for (int i = 0; i < scores.length; i++) {
+            scores[i] = random.nextDouble();
+            offer(i, scores[i]);
+            assertEquals(Math.min(i + 1, K), mSelector.size());
+        }
+
+        final double[] sorted = scores.clone();
+        Arrays.sort(sorted);
+        final CaptureSession session = mSelector.toSession("label");
+        assertEquals(K, session.size());
+        for (int i = 0; i < K; i++) {
+            final double expected = sorted[sorted.length - 1 - i];
+            assertEquals((float) expected, session.getLeftMetadata(i).score, 0f);
+            // crop 이 점수와 같은 후보에서 왔는지
+            assertEquals(indexOf(scores, expected), session.getLeftCrop(i).getPixels()[0]);
+            assertEquals("label", session.getLeftMetadata(i).label);
+        }
+        assertEquals(scores.length, mSelector.getCandidateCount());
+    }
+
+    @Test
+    public void rejectsCandidatesNotBetterThanTheWorstKept() {
+        for (int i = 0; i < K; i++) {
+            offer(i, 10 + i);
+        }
+        // 가장 낮은 점수 (10) 와 같거나 낮으면 복사할 pair 를 주지 않는다
+        assertNull(mSelector.begin(10, 0));
+        assertNull(mSelector.begin(3, 0));
+        assertEquals(K + 2, mSelector.getCandidateCount());
+        assertEquals(2 * K, mBuffers.getLiveCount());
+
+        assertNotNull(mSelector.begin(10.5, 0));
+    }
+
+    @Test
+    public void evictionReleasesTheCropsOfTheWorstPair() {
+        for (int i = 0; i < K; i++) {
+            offer(i, 10 + i);
+        }
+        final long allocated = mBuffers.getAllocatedCount();
+        for (int i = K; i < 4 * K; i++) {
+            offer(i, 10 + i);
+            // 밀려난 pair 의 crop 은 pool 로 돌아가 다음 후보에 재사용된다
+            assertEquals(2 * K, mBuffers.getLiveCount());
+        }
+        assertEquals(allocated + 2, mBuffers.getAllocatedCount());
+
+        final CaptureSession session = mSelector.toSession("label");
+        for (int i = 0; i < K; i++) {
+            assertEquals(4 * K - 1 - i, session.getLeftCrop(i).getPixels()[0]);
+        }
+    }
+
+    @Test
+    public void resetReleasesEverything() {
+        for (int i = 0; i < 3 * K; i++) {
+            offer(i, i);
+        }
+        mSelector.reset();
+        assertEquals(0, mBuffers.getLiveCount());
+        assertEquals(0, mSelector.size());
+        assertEquals(0, mSelector.getCandidateCount());
+        assertEquals(0, mSelector.toSession("label").size());
+    }
+
+    @Test
+    public void completesOnBudgetOrWindowOnceFull() {
+        final BestFrameSelector selector = new BestFrameSelector(2, 3, 100, mBuffers);
+        offer(selector, 0, 1, 50 * MS);
+        assertFalse(selector.isComplete(500 * MS));
+        offer(selector, 1, 2, 60 * MS);
+        // 2 개를 모았고 첫 후보 뒤 100 ms 가 지났다
+        assertFalse(selector.isComplete(149 * MS));
+        assertTrue(selector.isComplete(150 * MS));
+        // 후보 수로도 끝난다
+        assertNull(selector.begin(0, 70 * MS));
+        assertTrue(selector.isComplete(70 * MS));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void commitRejectsForeignPairs() {
+        mSelector.begin(1, 0);
+        mSelector.commit(new EyeCropPair());
+    }
+
+    private void offer(int id, double score) {
+        offer(mSelector, id, score, id * MS);
+    }
+
+    // EyeCropPair.fill 대신 pool 에서 crop 을 받아 후보 번호를 적는다
+    private void offer(BestFrameSelector selector, int id, double score, long timestamp) {
+        final EyeCropPair pair = selector.begin(score, timestamp);
+        if (pair == null) {
+            return;
+        }
+        pair.release(mBuffers);
+        pair.left = mBuffers.acquire(32, 16);
+        pair.right = mBuffers.acquire(32, 16);
+        pair.left.getPixels()[0] = (byte) id;
+        pair.right.getPixels()[0] = (byte) id;
+        selector.commit(pair);
+    }
+
+    private static int indexOf(double[] values, double value) {
+        for (int i = 0; i < values.length; i++) {
+            if (values[i] == value) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
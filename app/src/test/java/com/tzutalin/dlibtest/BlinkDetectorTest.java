@@ -0,0 +1,142 @@
+package com.tzutalin.dlibtest;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * {@link BlinkDetector} on EAR sequences that should and should not count as a blink with
+ * the default thresholds: closed below 0.2, open from 0.25, 800 ms window.
+ */
+public class BlinkDetectorTest {
+
+    private static final long FRAME_NANOS = 33000000L;
+    private static final float OPEN = 0.3f;
+    private static final float CLOSED = 0.1f;
+    private static final float HALF = 0.22f;
+
+    private BlinkDetector mDetector;
+    private long mTimestamp;
+
+    @Before
+    public void setUp() {
+        mDetector = new BlinkDetector();
+        mTimestamp = 0;
+    }
+
+    @Test
+    public void openClosedOpenIsABlink() {
+        assertFalse(add(OPEN));
+        assertFalse(add(CLOSED));
+        assertTrue(add(OPEN));
+        assertTrue(mDetector.isBlinkDetected());
+        assertEquals(1, mDetector.getBlinkCount());
+    }
+
+    @Test
+    public void halfClosedSamplesAroundTheDipAreSkipped() {
+        // 0.2 와 0.25 사이는 열림도 닫힘도 아니다
+        assertFalse(add(OPEN));
+        assertFalse(add(HALF));
+        assertFalse(add(CLOSED));
+        assertFalse(add(CLOSED));
+        assertFalse(add(HALF));
+        assertTrue(add(OPEN));
+    }
+
+    @Test
+    public void halfClosedIsNotABlink() {
+        assertFalse(add(OPEN));
+        assertFalse(add(HALF));
+        assertFalse(add(OPEN));
+        assertFalse(mDetector.isBlinkDetected());
+    }
+
+    @Test
+    public void closedWithoutOpenBeforeIsNotABlink() {
+        // 눈을 감은 채로 시작하면 열림 -> 닫힘 이 없다
+        assertFalse(add(CLOSED));
+        assertFalse(add(CLOSED));
+        assertFalse(add(OPEN));
+    }
+
+    @Test
+    public void slowDipIsNotABlink() {
+        assertFalse(add(OPEN));
+        assertFalse(add(CLOSED));
+        mTimestamp += 800000000L;
+        assertFalse(add(OPEN));
+        assertFalse(mDetector.isBlinkDetected());
+    }
+
+    @Test
+    public void blinkIsCountedOnce() {
+        add(OPEN);
+        add(CLOSED);
+        assertTrue(add(OPEN));
+        assertFalse(add(OPEN));
+        assertFalse(add(OPEN));
+        assertEquals(1, mDetector.getBlinkCount());
+
+        add(CLOSED);
+        assertTrue(add(OPEN));
+        assertEquals(2, mDetector.getBlinkCount());
+    }
+
+    @Test
+    public void blinkAcrossTheRingWraparound() {
+        // ring (32) 보다 많은 sample 뒤에도 찾는다
+        for (int i = 0; i < 45; i++) {
+            assertFalse(add(OPEN));
+        }
+        assertFalse(add(CLOSED));
+        assertFalse(add(CLOSED));
+        assertTrue(add(OPEN));
+    }
+
+    @Test
+    public void longClosureFillingTheRingIsNotABlink() {
+        add(OPEN);
+        // 33 ms * 40 frame 은 window 보다 길다
+        for (int i = 0; i < 40; i++) {
+            add(CLOSED);
+        }
+        assertFalse(add(OPEN));
+    }
+
+    @Test
+    public void resetClearsTheState() {
+        add(OPEN);
+        add(CLOSED);
+        add(OPEN);
+        mDetector.reset();
+        assertFalse(mDetector.isBlinkDetected());
+        assertEquals(0, mDetector.getBlinkCount());
+        // reset 전의 열림은 잊는다
+        assertFalse(add(CLOSED));
+        assertFalse(add(OPEN));
+    }
+
+    @Test
+    public void customThresholds() {
+        mDetector.setThresholds(0.05f, 0.15f, 200);
+        assertFalse(add(OPEN));
+        assertFalse(add(CLOSED));
+        assertFalse(add(OPEN));
+        assertFalse(add(0.01f));
+        assertTrue(add(OPEN));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsOpenBelowClosed() {
+        mDetector.setThresholds(0.3f, 0.2f, 800);
+    }
+
+    private boolean add(float ear) {
+        mTimestamp += FRAME_NANOS;
+        return mDetector.add(ear, mTimestamp);
+    }
+}
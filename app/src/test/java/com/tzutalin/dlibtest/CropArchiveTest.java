@@ -0,0 +1,226 @@
+package com.tzutalin.dlibtest;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Writes records with {@link CropArchive} and reads them back with {@link CropArchiveReader}.
+ */
+public class CropArchiveTest {
+
+    private static final int MAX_WIDTH = 20;
+    private static final int MAX_HEIGHT = 10;
+    private static final int RECORD_SIZE = CropArchive.RECORD_HEADER_SIZE + MAX_WIDTH * MAX_HEIGHT;
+
+    @Rule
+    public final TemporaryFolder mFolder = new TemporaryFolder();
+
+    private final Random mRandom = new Random(17);
+
+    @Test
+    public void headerDescribesTheLayout() throws IOException {
+        final File file = mFolder.newFile("crops.eyec");
+        new CropArchive(file, MAX_WIDTH, MAX_HEIGHT).close();
+
+        final ByteBuffer header = readFile(file);
+        assertEquals(CropArchive.HEADER_SIZE, header.capacity());
+        assertEquals(CropArchive.MAGIC, header.getInt(CropArchive.H_MAGIC));
+        assertEquals('E', header.get(0));
+        assertEquals('C', header.get(3));
+        assertEquals(CropArchive.VERSION, header.getInt(CropArchive.H_VERSION));
+        assertEquals(CropArchive.HEADER_SIZE, header.getInt(CropArchive.H_HEADER_SIZE));
+        assertEquals(CropArchive.RECORD_HEADER_SIZE, header.getInt(CropArchive.H_RECORD_HEADER_SIZE));
+        assertEquals(MAX_WIDTH, header.getInt(CropArchive.H_MAX_WIDTH));
+        assertEquals(MAX_HEIGHT, header.getInt(CropArchive.H_MAX_HEIGHT));
+        assertEquals(RECORD_SIZE, header.getInt(CropArchive.H_RECORD_SIZE));
+
+        final CropArchiveReader reader = new CropArchiveReader(file);
+        assertEquals(0, reader.size());
+        assertEquals(MAX_WIDTH, reader.getMaxWidth());
+        assertEquals(MAX_HEIGHT, reader.getMaxHeight());
+    }
+
+    @Test
+    public void metadataRoundTrips() throws IOException {
+        final File file = mFolder.newFile("crops.eyec");
+        final CropMetadata meta = metadata("kim");
+        final CropArchive archive = new CropArchive(file, MAX_WIDTH, MAX_HEIGHT);
+        assertTrue(archive.append(randomCrop(7, 5), meta));
+        archive.close();
+
+        final CropArchiveReader reader = new CropArchiveReader(file);
+        assertEquals(1, reader.size());
+        final CropMetadata read = new CropMetadata();
+        reader.readMetadata(0, read);
+        assertEquals(meta.timestamp, read.timestamp);
+        assertEquals(meta.side, read.side);
+        assertEquals("kim", read.label);
+        assertEquals(meta.blur, read.blur, 0f);
+        assertEquals(meta.ear, read.ear, 0f);
+        assertEquals(meta.score, read.score, 0f);
+        assertEquals(meta.yaw, read.yaw, 0f);
+        assertEquals(meta.pitch, read.pitch, 0f);
+        assertEquals(meta.roll, read.roll, 0f);
+        assertEquals(meta.sensorRoll, read.sensorRoll, 0f);
+        assertEquals(meta.sensorPitch, read.sensorPitch, 0f);
+        assertEquals(meta.sensorYaw, read.sensorYaw, 0f);
+        assertTrue(Float.isNaN(read.brightness));
+        assertEquals(meta.gyroX, read.gyroX, 0f);
+        assertEquals(meta.gyroY, read.gyroY, 0f);
+        assertEquals(meta.gyroZ, read.gyroZ, 0f);
+        assertEquals(meta.accelX, read.accelX, 0f);
+        assertEquals(meta.accelY, read.accelY, 0f);
+        assertEquals(meta.accelZ, read.accelZ, 0f);
+
+        assertEquals(meta.timestamp, reader.getTimestamp(0));
+        assertEquals(CropMetadata.SIDE_RIGHT, reader.getSide(0));
+        assertEquals(7, reader.getWidth(0));
+        assertEquals(5, reader.getHeight(0));
+        assertEquals(meta.blur, reader.getBlur(0), 0f);
+        assertEquals(meta.score, reader.getScore(0), 0f);
+    }
+
+    @Test
+    public void labelIsTruncatedAndNonAsciiReplaced() throws IOException {
+        final File file = mFolder.newFile("crops.eyec");
+        final CropArchive archive = new CropArchive(file, MAX_WIDTH, MAX_HEIGHT);
+        archive.append(randomCrop(3, 3), metadata("abcdefghijklmnopqrstuvwxyz"));
+        archive.append(randomCrop(3, 3), metadata("이름 A"));
+        archive.append(randomCrop(3, 3), metadata(null));
+        archive.close();
+
+        final CropArchiveReader reader = new CropArchiveReader(file);
+        final CropMetadata read = new CropMetadata();
+        reader.readMetadata(0, read);
+        assertEquals("abcdefghijklmnop", read.label);
+        reader.readMetadata(1, read);
+        assertEquals("?? A", read.label);
+        reader.readMetadata(2, read);
+        assertEquals("", read.label);
+    }
+
+    @Test
+    public void pixelsRoundTripAndTheTailStaysZero() throws IOException {
+        final File file = mFolder.newFile("crops.eyec");
+        final GrayFrame large = randomCrop(MAX_WIDTH, MAX_HEIGHT);
+        final GrayFrame small = randomCrop(6, 4);
+        final CropArchive archive = new CropArchive(file, MAX_WIDTH, MAX_HEIGHT);
+        assertTrue(archive.append(large, metadata("a")));
+        // 큰 crop 다음의 작은 crop: 재사용하는 record buffer 의 나머지는 0 이어야 한다
+        assertTrue(archive.append(small, metadata("b")));
+        assertFalse(archive.append(randomCrop(MAX_WIDTH + 1, 2), metadata("c")));
+        assertEquals(2, archive.getRecordCount());
+        archive.close();
+
+        final CropArchiveReader reader = new CropArchiveReader(file);
+        assertEquals(2, reader.size());
+        final GrayFrame read = new GrayFrame(1, 1);
+        reader.readPixels(0, read);
+        assertCrop(large, read);
+        reader.readPixels(1, read);
+        assertCrop(small, read);
+
+        final ByteBuffer raw = readFile(file);
+        assertEquals(CropArchive.HEADER_SIZE + 2 * RECORD_SIZE, raw.capacity());
+        final int tail = CropArchive.HEADER_SIZE + RECORD_SIZE + CropArchive.RECORD_HEADER_SIZE + 6 * 4;
+        for (int i = tail; i < raw.capacity(); i++) {
+            assertEquals("byte " + i, 0, raw.get(i));
+        }
+    }
+
+    @Test
+    public void reopeningAppendsAfterTheLastCompleteRecord() throws IOException {
+        final File file = mFolder.newFile("crops.eyec");
+        CropArchive archive = new CropArchive(file, MAX_WIDTH, MAX_HEIGHT);
+        archive.append(randomCrop(5, 5), metadata("a"));
+        archive.close();
+        // 쓰다 만 record
+        final RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        raf.setLength(raf.length() + 30);
+        raf.close();
+
+        archive = new CropArchive(file, MAX_WIDTH, MAX_HEIGHT);
+        assertEquals(1, archive.getRecordCount());
+        final GrayFrame second = randomCrop(8, 3);
+        archive.append(second, metadata("b"));
+        archive.close();
+
+        final CropArchiveReader reader = new CropArchiveReader(file);
+        assertEquals(2, reader.size());
+        final GrayFrame read = new GrayFrame(1, 1);
+        reader.readPixels(1, read);
+        assertCrop(second, read);
+    }
+
+    @Test(expected = IOException.class)
+    public void rejectsAnArchiveOfAnotherSize() throws IOException {
+        final File file = mFolder.newFile("crops.eyec");
+        new CropArchive(file, MAX_WIDTH, MAX_HEIGHT).close();
+        new CropArchive(file, MAX_WIDTH, MAX_HEIGHT + 1);
+    }
+
+    private CropMetadata metadata(String label) {
+        final CropMetadata meta = new CropMetadata();
+        meta.timestamp = mRandom.nextLong();
+        meta.side = CropMetadata.SIDE_RIGHT;
+        meta.label = label;
+        meta.blur = 12.5f;
+        meta.ear = 0.31f;
+        meta.score = 0.87f;
+        meta.yaw = -4.5f;
+        meta.pitch = 2.25f;
+        meta.roll = 1.5f;
+        meta.sensorRoll = 3f;
+        meta.sensorPitch = -80f;
+        meta.sensorYaw = 170f;
+        meta.brightness = Float.NaN;
+        meta.gyroX = 0.01f;
+        meta.gyroY = -0.02f;
+        meta.gyroZ = 0.03f;
+        meta.accelX = 0.1f;
+        meta.accelY = 9.8f;
+        meta.accelZ = -0.3f;
+        return meta;
+    }
+
+    private GrayFrame randomCrop(int width, int height) {
+        final GrayFrame crop = new GrayFrame(width, height);
+        mRandom.nextBytes(crop.getPixels());
+        return crop;
+    }
+
+    private static void assertCrop(GrayFrame expected, GrayFrame actual) {
+        assertEquals(expected.getWidth(), actual.getWidth());
+        assertEquals(expected.getHeight(), actual.getHeight());
+        final int size = expected.getWidth() * expected.getHeight();
+        final byte[] pixels = new byte[size];
+        System.arraycopy(actual.getPixels(), 0, pixels, 0, size);
+        final byte[] expectedPixels = new byte[size];
+        System.arraycopy(expected.getPixels(), 0, expectedPixels, 0, size);
+        assertArrayEquals(expectedPixels, pixels);
+    }
+
+    private static ByteBuffer readFile(File file) throws IOException {
+        final RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            final byte[] data = new byte[(int) raf.length()];
+            raf.readFully(data);
+            return ByteBuffer.wrap(data).order(ByteOrder.LITTLE_ENDIAN);
+        } finally {
+            raf.close();
+        }
+    }
+}
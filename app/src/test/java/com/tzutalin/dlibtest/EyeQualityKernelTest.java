@@ -0,0 +1,109 @@
+package com.tzutalin.dlibtest;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * {@link EyeQualityKernel} on synthetic patches with hand-computed statistics. Every
+ * patch sits inside a larger frame of random pixels to check that only the crop is read.
+ */
+public class EyeQualityKernelTest {
+
+    private static final int STRIDE = 11;
+    private static final int LEFT = 3;
+    private static final int TOP = 2;
+
+    private final EyeQuality mQuality = new EyeQuality();
+
+    @Test
+    public void flatPatchHasNoContrastOrEdges() {
+        final byte[] frame = frameWith(new int[][]{
+                {100, 100, 100, 100, 100},
+                {100, 100, 100, 100, 100},
+                {100, 100, 100, 100, 100},
+                {100, 100, 100, 100, 100}});
+        EyeQualityKernel.measure(frame, STRIDE, LEFT, TOP, 5, 4, mQuality);
+
+        assertEquals(20, mQuality.pixelCount);
+        assertEquals(100, mQuality.mean, 1e-9);
+        assertEquals(0, mQuality.contrast, 1e-9);
+        assertEquals(0, mQuality.laplacianStdDev(), 1e-9);
+        assertEquals(0, mQuality.tenengrad, 1e-9);
+        assertEquals(0, mQuality.saturatedCount);
+    }
+
+    @Test
+    public void checkerboardHasMaximalLaplacianAndNoGradient() {
+        // 안쪽 2x2 의 Laplacian: 0 인 픽셀은 4 * 255, 255 인 픽셀은 -4 * 255
+        // Sobel 은 좌우 / 상하가 같은 값이라 0
+        final byte[] frame = frameWith(new int[][]{
+                {0, 255, 0, 255},
+                {255, 0, 255, 0},
+                {0, 255, 0, 255},
+                {255, 0, 255, 0}});
+        EyeQualityKernel.measure(frame, STRIDE, LEFT, TOP, 4, 4, mQuality);
+
+        assertEquals(127.5, mQuality.mean, 1e-9);
+        assertEquals(127.5, mQuality.contrast, 1e-9);
+        assertEquals(1020, mQuality.laplacianStdDev(), 1e-9);
+        assertEquals(1020 * 1020, mQuality.laplacianVariance, 1e-6);
+        assertEquals(0, mQuality.tenengrad, 1e-9);
+        assertEquals(8, mQuality.saturatedCount);
+    }
+
+    @Test
+    public void verticalEdge() {
+        // 안쪽 두 픽셀: Laplacian 100 / -100, Sobel gx 400 / 400
+        final byte[] frame = frameWith(new int[][]{
+                {0, 0, 100, 100},
+                {0, 0, 100, 100},
+                {0, 0, 100, 100}});
+        EyeQualityKernel.measure(frame, STRIDE, LEFT, TOP, 4, 3, mQuality);
+
+        assertEquals(50, mQuality.mean, 1e-9);
+        assertEquals(50, mQuality.contrast, 1e-9);
+        assertEquals(100, mQuality.laplacianStdDev(), 1e-9);
+        assertEquals(400 * 400, mQuality.tenengrad, 1e-9);
+        assertEquals(0, mQuality.saturatedCount);
+    }
+
+    @Test
+    public void countsSaturatedPixels() {
+        final byte[] frame = frameWith(new int[][]{
+                {249, 250, 251},
+                {255, 10, 20}});
+        EyeQualityKernel.measure(frame, STRIDE, LEFT, TOP, 3, 2, mQuality);
+
+        assertEquals(3, mQuality.saturatedCount);
+        assertEquals((249 + 250 + 251 + 255 + 10 + 20) / 6.0, mQuality.mean, 1e-9);
+        // 3x3 안쪽이 없는 crop 은 선명도를 0 으로 둔다
+        assertEquals(0, mQuality.laplacianVariance, 1e-9);
+        assertEquals(0, mQuality.tenengrad, 1e-9);
+    }
+
+    @Test
+    public void emptyCropClearsTheResult() {
+        mQuality.mean = 10;
+        mQuality.pixelCount = 4;
+        EyeQualityKernel.measure(new byte[STRIDE * 8], STRIDE, LEFT, TOP, 0, 3, mQuality);
+
+        assertEquals(0, mQuality.pixelCount);
+        assertEquals(0, mQuality.mean, 0);
+    }
+
+    // patch 를 (LEFT, TOP) 에 두고 나머지는 임의의 값으로 채운 frame
+    private static byte[] frameWith(int[][] patch) {
+        final byte[] frame = new byte[STRIDE * (TOP + patch.length + 2)];
+        new Random(5).nextBytes(frame);
+        for (int y = 0; y < patch.length; y++) {
+            for (int x = 0; x < patch[y].length; x++) {
+                frame[(TOP + y) * STRIDE + LEFT + x] = (byte) patch[y][x];
+            }
+        }
+        return frame;
+    }
+
+}
@@ -0,0 +1,119 @@
+package com.tzutalin.dlibtest;
+
+import org.junit.Test;
+
+import java.nio.FloatBuffer;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Compares {@link EyeTensorPreprocessor} with a naive area-averaging resize that
+ * integrates every output pixel over the source rectangle it covers.
+ */
+public class EyeTensorPreprocessorTest {
+
+    private static final int[] WIDTHS = {8, 16, 5};
+    private static final int[] HEIGHTS = {4, 6, 7};
+
+    private final EyeTensorPreprocessor mPreprocessor = new EyeTensorPreprocessor(WIDTHS, HEIGHTS, 3);
+    private final Random mRandom = new Random(11);
+
+    @Test
+    public void downscaleMatchesReference() {
+        checkAgainstReference(randomFrame(37, 23), 0);
+    }
+
+    @Test
+    public void upscaleMatchesReference() {
+        checkAgainstReference(randomFrame(3, 2), 0);
+    }
+
+    @Test
+    public void exactMultiplesMatchReference() {
+        checkAgainstReference(randomFrame(80, 84), 0);
+    }
+
+    @Test
+    public void cachedSpansFollowTheCropSize() {
+        // 크기가 바뀌거나 (가로만, 세로만) 같은 크기가 이어져도 결과는 같아야 한다
+        final int[][] sizes = {{37, 23}, {37, 23}, {20, 23}, {20, 9}, {37, 23}, {16, 6}};
+        for (final int[] size : sizes) {
+            checkAgainstReference(randomFrame(size[0], size[1]), 0);
+        }
+    }
+
+    @Test
+    public void imagesOfABatchDoNotOverlap() {
+        final GrayFrame[] frames = {randomFrame(30, 12), randomFrame(17, 9), randomFrame(41, 20)};
+        for (int n = 0; n < frames.length; n++) {
+            mPreprocessor.process(frames[n], n);
+        }
+        for (int s = 0; s < WIDTHS.length; s++) {
+            final FloatBuffer input = mPreprocessor.getInput(s, frames.length);
+            final int size = WIDTHS[s] * HEIGHTS[s];
+            assertEquals(frames.length * size, input.remaining());
+            for (int n = 0; n < frames.length; n++) {
+                final double[] expected = reference(frames[n], WIDTHS[s], HEIGHTS[s]);
+                for (int k = 0; k < size; k++) {
+                    assertEquals("image " + n + " scale " + s + " at " + k, expected[k], input.get(n * size + k), 1e-5);
+                }
+            }
+        }
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void rejectsIndexBeyondCapacity() {
+        mPreprocessor.process(randomFrame(10, 10), 3);
+    }
+
+    private void checkAgainstReference(GrayFrame frame, int index) {
+        mPreprocessor.process(frame, index);
+        for (int s = 0; s < WIDTHS.length; s++) {
+            final double[] expected = reference(frame, WIDTHS[s], HEIGHTS[s]);
+            final FloatBuffer input = mPreprocessor.getInput(s, index + 1);
+            final int offset = index * WIDTHS[s] * HEIGHTS[s];
+            for (int k = 0; k < expected.length; k++) {
+                assertEquals(frame.getWidth() + "x" + frame.getHeight() + " scale " + s + " at " + k,
+                        expected[k], input.get(offset + k), 1e-5);
+            }
+        }
+    }
+
+    // 출력 (ox, oy) 는 원본 [ox * rx, (ox + 1) * rx) x [oy * ry, (oy + 1) * ry) 의 평균
+    private static double[] reference(GrayFrame frame, int width, int height) {
+        final int srcWidth = frame.getWidth();
+        final int srcHeight = frame.getHeight();
+        final byte[] pixels = frame.getPixels();
+        final double rx = (double) srcWidth / width;
+        final double ry = (double) srcHeight / height;
+        final double[] out = new double[width * height];
+        for (int oy = 0; oy < height; oy++) {
+            for (int ox = 0; ox < width; ox++) {
+                double sum = 0;
+                for (int sy = 0; sy < srcHeight; sy++) {
+                    final double wy = overlap(sy, oy * ry, (oy + 1) * ry);
+                    if (wy <= 0) {
+                        continue;
+                    }
+                    for (int sx = 0; sx < srcWidth; sx++) {
+                        final double wx = overlap(sx, ox * rx, (ox + 1) * rx);
+                        sum += wx * wy * ((pixels[sy * srcWidth + sx] & 0xff) / 255.0);
+                    }
+                }
+                out[oy * width + ox] = sum / (rx * ry);
+            }
+        }
+        return out;
+    }
+
+    private static double overlap(int pixel, double start, double end) {
+        return Math.max(0, Math.min(end, pixel + 1) - Math.max(start, pixel));
+    }
+
+    private GrayFrame randomFrame(int width, int height) {
+        final GrayFrame frame = new GrayFrame(width, height);
+        mRandom.nextBytes(frame.getPixels());
+        return frame;
+    }
+}
@@ -0,0 +1,207 @@
+package com.tzutalin.dlibtest;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Compares {@link FrameSampler} with a naive reference that first crops and scales the
+ * bottom-right square of the frame and then rotates it clockwise, for every filter and
+ * rotation on planes with odd row strides.
+ */
+public class FrameSamplerTest {
+
+    private static final int[] ROTATIONS = {0, 90, 180, 270};
+    // 가로가 긴 frame, 세로가 긴 frame
+    private static final int[][] SIZES = {{37, 23}, {20, 31}};
+
+    private final FrameSampler mSampler = new FrameSampler();
+    private final Random mRandom = new Random(3);
+
+    @Test
+    public void nearestMatchesReference() {
+        checkAllRotations(FrameSampler.FILTER_NEAREST, 8, 0);
+    }
+
+    @Test
+    public void areaMatchesReference() {
+        checkAllRotations(FrameSampler.FILTER_AREA, 8, 0);
+        checkAllRotations(FrameSampler.FILTER_AREA, 7, 0);
+    }
+
+    @Test
+    public void areaUpscaleUsesOnePixel() {
+        checkAllRotations(FrameSampler.FILTER_AREA, 29, 0);
+    }
+
+    @Test
+    public void bilinearIsWithinRoundingOfReference() {
+        // 8 bit 고정 소수점 가중치라 float 보다 1 정도 다를 수 있다
+        checkAllRotations(FrameSampler.FILTER_BILINEAR, 8, 1);
+        checkAllRotations(FrameSampler.FILTER_BILINEAR, 29, 1);
+    }
+
+    @Test
+    public void argbUsesCenterChromaOfTheSampledLuma() {
+        final int width = 37;
+        final int height = 23;
+        final int yRowStride = 41;
+        final int uvRowStride = 43;
+        final int uvPixelStride = 2;
+        final int size = 8;
+        final ByteBuffer y = randomPlane(yRowStride * height, 5);
+        final ByteBuffer u = randomPlane(uvRowStride * ((height + 1) / 2), 2);
+        final ByteBuffer v = randomPlane(uvRowStride * ((height + 1) / 2), 7);
+
+        for (final int rotation : ROTATIONS) {
+            mSampler.configure(width, height, size, rotation, FrameSampler.FILTER_AREA);
+            final GrayFrame gray = new GrayFrame(1, 1);
+            final int[] argb = new int[size * size];
+            mSampler.sampleArgb(y, u, v, yRowStride, uvRowStride, uvPixelStride, gray, argb);
+
+            // 회전 전 좌표 (row, col) 의 중심 chroma
+            final int[] chromaU = new int[size * size];
+            final int[] chromaV = new int[size * size];
+            final int minDim = Math.min(width, height);
+            for (int row = 0; row < size; row++) {
+                final int cy = (height - minDim) + (2 * row + 1) * minDim / (2 * size);
+                for (int col = 0; col < size; col++) {
+                    final int cx = (width - minDim) + (2 * col + 1) * minDim / (2 * size);
+                    final int offset = (cy >> 1) * uvRowStride + (cx >> 1) * uvPixelStride;
+                    chromaU[row * size + col] = u.get(u.position() + offset) & 0xff;
+                    chromaV[row * size + col] = v.get(v.position() + offset) & 0xff;
+                }
+            }
+            final int[] rotatedU = rotate(chromaU, size, rotation);
+            final int[] rotatedV = rotate(chromaV, size, rotation);
+            final byte[] luma = gray.getPixels();
+            for (int i = 0; i < size * size; i++) {
+                assertEquals("rotation " + rotation + " at " + i,
+                        JavaYuvConverter.yuvToArgb(luma[i] & 0xff, rotatedU[i], rotatedV[i]), argb[i]);
+            }
+        }
+    }
+
+    @Test
+    public void configurationIsCached() {
+        mSampler.configure(37, 23, 8, -90, FrameSampler.FILTER_AREA);
+        assertTrue(mSampler.isConfigured(37, 23, 8, 270, FrameSampler.FILTER_AREA));
+        assertFalse(mSampler.isConfigured(37, 23, 8, 90, FrameSampler.FILTER_AREA));
+        assertFalse(mSampler.isConfigured(37, 23, 8, 270, FrameSampler.FILTER_NEAREST));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsOddRotations() {
+        mSampler.configure(37, 23, 8, 45, FrameSampler.FILTER_AREA);
+    }
+
+    private void checkAllRotations(int filter, int size, int tolerance) {
+        for (final int[] dims : SIZES) {
+            final int width = dims[0];
+            final int height = dims[1];
+            // 홀수 row stride, buffer 중간에서 시작하는 plane
+            final int yRowStride = width + 3;
+            final ByteBuffer y = randomPlane(yRowStride * height, 9);
+            final int[] expected = reference(y, width, height, yRowStride, size, filter);
+
+            for (final int rotation : ROTATIONS) {
+                mSampler.configure(width, height, size, rotation, filter);
+                final GrayFrame gray = new GrayFrame(1, 1);
+                mSampler.sampleLuma(y, yRowStride, gray);
+                assertEquals(size, gray.getWidth());
+                assertEquals(size, gray.getHeight());
+                assertEquals(9, y.position());
+
+                final int[] rotated = rotate(expected, size, rotation);
+                final byte[] actual = gray.getPixels();
+                for (int i = 0; i < size * size; i++) {
+                    assertEquals(width + "x" + height + " filter " + filter + " rotation " + rotation + " at " + i,
+                            rotated[i], actual[i] & 0xff, tolerance);
+                }
+            }
+        }
+    }
+
+    // 오른쪽 아래 정사각형을 size x size 로 줄인 (회전 전) 결과
+    private static int[] reference(ByteBuffer y, int width, int height, int rowStride, int size, int filter) {
+        final int length = Math.min(width, height);
+        final int offsetX = width - length;
+        final int offsetY = height - length;
+        final int[] out = new int[size * size];
+        for (int row = 0; row < size; row++) {
+            for (int col = 0; col < size; col++) {
+                final int value;
+                if (filter == FrameSampler.FILTER_NEAREST) {
+                    final int sx = offsetX + (2 * col + 1) * length / (2 * size);
+                    final int sy = offsetY + (2 * row + 1) * length / (2 * size);
+                    value = pixel(y, rowStride, sx, sy);
+                } else if (filter == FrameSampler.FILTER_AREA) {
+                    final int x0 = col * length / size;
+                    final int x1 = Math.max(x0 + 1, (col + 1) * length / size);
+                    final int y0 = row * length / size;
+                    final int y1 = Math.max(y0 + 1, (row + 1) * length / size);
+                    int sum = 0;
+                    for (int sy = y0; sy < y1; sy++) {
+                        for (int sx = x0; sx < x1; sx++) {
+                            sum += pixel(y, rowStride, offsetX + sx, offsetY + sy);
+                        }
+                    }
+                    final int count = (x1 - x0) * (y1 - y0);
+                    value = Math.round((float) sum / count);
+                } else {
+                    final double fx = clampPosition((col + 0.5) * length / size - 0.5, length);
+                    final double fy = clampPosition((row + 0.5) * length / size - 0.5, length);
+                    final int x0 = Math.min((int) fx, length - 2);
+                    final int y0 = Math.min((int) fy, length - 2);
+                    final double wx = fx - x0;
+                    final double wy = fy - y0;
+                    final double top = pixel(y, rowStride, offsetX + x0, offsetY + y0) * (1 - wx)
+                            + pixel(y, rowStride, offsetX + x0 + 1, offsetY + y0) * wx;
+                    final double bottom = pixel(y, rowStride, offsetX + x0, offsetY + y0 + 1) * (1 - wx)
+                            + pixel(y, rowStride, offsetX + x0 + 1, offsetY + y0 + 1) * wx;
+                    value = (int) Math.round(top * (1 - wy) + bottom * wy);
+                }
+                out[row * size + col] = value;
+            }
+        }
+        return out;
+    }
+
+    private static double clampPosition(double position, int length) {
+        return Math.min(Math.max(position, 0), length - 1);
+    }
+
+    // 시계 방향 회전: 회전 후 (r, c) 는 회전 전 (size - 1 - c, r)
+    private static int[] rotate(int[] src, int size, int rotation) {
+        int[] current = src;
+        for (int turn = 0; turn < rotation / 90; turn++) {
+            final int[] next = new int[size * size];
+            for (int r = 0; r < size; r++) {
+                for (int c = 0; c < size; c++) {
+                    next[r * size + c] = current[(size - 1 - c) * size + r];
+                }
+            }
+            current = next;
+        }
+        return current;
+    }
+
+    private static int pixel(ByteBuffer plane, int rowStride, int x, int y) {
+        return plane.get(plane.position() + y * rowStride + x) & 0xff;
+    }
+
+    private ByteBuffer randomPlane(int length, int position) {
+        final byte[] data = new byte[length];
+        mRandom.nextBytes(data);
+        final ByteBuffer buffer = ByteBuffer.allocateDirect(position + length);
+        buffer.position(position);
+        buffer.put(data);
+        buffer.position(position);
+        return buffer;
+    }
+}
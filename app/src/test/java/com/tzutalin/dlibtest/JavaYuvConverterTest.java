@@ -0,0 +1,49 @@
+package com.tzutalin.dlibtest;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Checks the {@link JavaYuvConverter} kernel bit for bit against a per-pixel port of the
+ * native converter (yuv2rgb.cc) over every Y, U and V value.
+ */
+public class JavaYuvConverterTest {
+
+    @Test
+    public void yuvToArgbMatchesNativeForAllInputs() {
+        for (int y = 0; y < 256; y++) {
+            for (int u = 0; u < 256; u++) {
+                for (int v = 0; v < 256; v++) {
+                    final int expected = refArgb(y, u, v);
+                    final int actual = JavaYuvConverter.yuvToArgb(y, u, v);
+                    if (expected != actual) {
+                        assertEquals("y " + y + " u " + u + " v " + v, expected, actual);
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void grayHasNoChroma() {
+        // U = V = 128 이면 R = G = B
+        assertEquals(0xff000000, JavaYuvConverter.yuvToArgb(16, 128, 128));
+        assertEquals(0xffffffff, JavaYuvConverter.yuvToArgb(255, 128, 128));
+        final int mid = JavaYuvConverter.yuvToArgb(126, 128, 128) & 0xff;
+        assertEquals(0xff000000 | mid * 0x010101, JavaYuvConverter.yuvToArgb(126, 128, 128));
+    }
+
+    // yuv2rgb.cc 의 YUV2RGB: 10 bit 고정 소수점 BT.601, 채널은 18 bit
+    private static int refArgb(int y, int u, int v) {
+        final int y1192 = 1192 * Math.max(0, y - 16);
+        final int r = clamp18(y1192 + 1634 * (v - 128));
+        final int g = clamp18(y1192 - 833 * (v - 128) - 400 * (u - 128));
+        final int b = clamp18(y1192 + 2066 * (u - 128));
+        return 0xff000000 | ((r >> 10) << 16) | ((g >> 10) << 8) | (b >> 10);
+    }
+
+    private static int clamp18(int value) {
+        return Math.min(Math.max(value, 0), 262143);
+    }
+}
@@ -0,0 +1,67 @@
+package com.tzutalin.dlibtest;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * The {@link MotionBlurGate} blur formula on hand-computed cases, and the gate decisions
+ * that do not depend on a live gyroscope.
+ */
+public class MotionBlurGateTest {
+
+    private static final long EXPOSURE_10MS = 10000000L;
+
+    @Test
+    public void panAndTiltMoveTheImageByTheFocalLength() {
+        // f = 4 / 5 * 500 = 400px, 0.5 rad/s * 10 ms * 400px
+        assertEquals(2f, MotionBlurGate.predictBlur(EXPOSURE_10MS, 4f, 5f, 0.5f, 0f, 500f), 1e-5f);
+    }
+
+    @Test
+    public void rollMovesTheImageByAQuarterOfTheWidth() {
+        // 1 rad/s * 10 ms * 500px / 4
+        assertEquals(1.25f, MotionBlurGate.predictBlur(EXPOSURE_10MS, 4f, 5f, 0f, 1f, 500f), 1e-5f);
+    }
+
+    @Test
+    public void panAndRollAddUp() {
+        assertEquals(3.25f, MotionBlurGate.predictBlur(EXPOSURE_10MS, 4f, 5f, 0.5f, 1f, 500f), 1e-5f);
+        // 노출이 두 배면 blur 도 두 배
+        assertEquals(6.5f, MotionBlurGate.predictBlur(2 * EXPOSURE_10MS, 4f, 5f, 0.5f, 1f, 500f), 1e-5f);
+    }
+
+    @Test
+    public void stillPhoneHasNoBlur() {
+        assertEquals(0f, MotionBlurGate.predictBlur(EXPOSURE_10MS, 4f, 5f, 0f, 0f, 500f), 0f);
+    }
+
+    @Test
+    public void unknownExposureOrLensCannotBePredicted() {
+        assertTrue(MotionBlurGate.predictBlur(0, 4f, 5f, 0.5f, 1f, 500f) < 0);
+        assertTrue(MotionBlurGate.predictBlur(EXPOSURE_10MS, 0f, 5f, 0.5f, 1f, 500f) < 0);
+        assertTrue(MotionBlurGate.predictBlur(EXPOSURE_10MS, 4f, 0f, 0.5f, 1f, 500f) < 0);
+    }
+
+    @Test
+    public void unknownExposureIsNotSkipped() {
+        final MotionBlurGate gate = new MotionBlurGate();
+        gate.setLens(4f, 5f);
+        assertFalse(gate.shouldSkip(500f));
+        assertTrue(gate.getLastBlur() < 0);
+        assertEquals(0, gate.getSkippedCount());
+    }
+
+    @Test
+    public void disabledGateNeverSkips() {
+        final MotionBlurGate gate = new MotionBlurGate();
+        gate.setEnabled(false);
+        gate.setLens(4f, 5f);
+        gate.setExposureTime(EXPOSURE_10MS);
+        gate.setMaxBlur(0f);
+        assertFalse(gate.shouldSkip(500f));
+        assertEquals(0, gate.getSkippedCount());
+    }
+}
@@ -0,0 +1,165 @@
+package com.tzutalin.dlibtest;
+
+import org.junit.Test;
+
+import java.nio.FloatBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Batch verification of {@link TensorFlowClassifier} on a fake graph, including the
+ * fallback to one pair per run when the graph rejects a batch.
+ */
+public class TensorFlowClassifierTest {
+
+    private static final int[] WIDTHS = {8, 4};
+    private static final int[] HEIGHTS = {4, 2};
+    private static final String[] RIGHT_INPUTS = {"right/low", "right/high"};
+    private static final String[] LEFT_INPUTS = {"left/low", "left/high"};
+    private static final String[] OUTPUTS = {"right/softmax", "left/softmax"};
+    private static final int C = TensorFlowClassifier.NUM_CLASSES;
+
+    @Test
+    public void batchMatchesExpectedScoresInOneRun() {
+        final FakeGraph graph = new FakeGraph(false);
+        final TensorFlowClassifier classifier = newClassifier(graph);
+        final int[] rightValues = {10, 200, 90};
+        final int[] leftValues = {40, 5, 255};
+
+        final float[][] results = classifier.verificationEyeBatch(
+                crops(leftValues, 13, 7), crops(rightValues, 20, 10), 3);
+
+        assertEquals(Arrays.asList(3), graph.mRunBatches);
+        assertEquals(3, results.length);
+        for (int n = 0; n < 3; n++) {
+            assertArrayEquals(expected(rightValues[n], leftValues[n]), results[n], 1e-5f);
+        }
+    }
+
+    @Test
+    public void batchMatchesPairByPair() {
+        final TensorFlowClassifier classifier = newClassifier(new FakeGraph(false));
+        final int[] rightValues = {0, 128, 77, 250};
+        final int[] leftValues = {255, 64, 3, 180};
+        final GrayFrame[] lefts = crops(leftValues, 30, 12);
+        final GrayFrame[] rights = crops(rightValues, 9, 5);
+
+        final float[][] batch = classifier.verificationEyeBatch(lefts, rights, 4);
+        for (int n = 0; n < 4; n++) {
+            final float[] single = new float[C];
+            classifier.verifyPair(lefts[n], rights[n], single);
+            assertArrayEquals(single, batch[n], 0f);
+        }
+    }
+
+    @Test
+    public void fallsBackToPairsWhenTheGraphRejectsABatch() {
+        final FakeGraph graph = new FakeGraph(true);
+        final TensorFlowClassifier classifier = newClassifier(graph);
+        final int[] rightValues = {10, 200, 90};
+        final int[] leftValues = {40, 5, 255};
+
+        final float[][] results = classifier.verificationEyeBatch(
+                crops(leftValues, 13, 7), crops(rightValues, 20, 10), 3);
+
+        // batch 실행이 한 번 실패한 뒤 쌍마다 실행
+        assertEquals(Arrays.asList(3, 1, 1, 1), graph.mRunBatches);
+        for (int n = 0; n < 3; n++) {
+            assertArrayEquals(expected(rightValues[n], leftValues[n]), results[n], 1e-5f);
+        }
+
+        // 다음 호출부터는 batch 를 시도하지 않는다
+        graph.mRunBatches.clear();
+        classifier.verificationEyeBatch(crops(leftValues, 13, 7), crops(rightValues, 20, 10), 2);
+        assertEquals(Arrays.asList(1, 1), graph.mRunBatches);
+    }
+
+    @Test
+    public void emptyBatchDoesNotRunTheGraph() {
+        final FakeGraph graph = new FakeGraph(false);
+        final float[][] results = newClassifier(graph).verificationEyeBatch(new GrayFrame[0], new GrayFrame[0], 0);
+        assertEquals(0, results.length);
+        assertEquals(0, graph.mRunBatches.size());
+    }
+
+    private static TensorFlowClassifier newClassifier(FakeGraph graph) {
+        return new TensorFlowClassifier(graph, WIDTHS, HEIGHTS, RIGHT_INPUTS, LEFT_INPUTS, OUTPUTS);
+    }
+
+    // 단색 crop 은 어느 scale 로 줄여도 값 / 255 가 된다
+    private static GrayFrame[] crops(int[] values, int width, int height) {
+        final GrayFrame[] frames = new GrayFrame[values.length];
+        for (int n = 0; n < values.length; n++) {
+            frames[n] = new GrayFrame(width, height);
+            Arrays.fill(frames[n].getPixels(), (byte) values[n]);
+        }
+        return frames;
+    }
+
+    private static float[] expected(int right, int left) {
+        final float r = right / 255f;
+        final float l = left / 255f;
+        final float[] scores = new float[C];
+        for (int c = 0; c < C; c++) {
+            scores[c] = r * (c + 1) + l * l;
+        }
+        return scores;
+    }
+
+    /**
+     * Scores image n from the mean m of its first-scale input: m * (c + 1) for the right
+     * output and m * m for the left one, so mixed-up images or sides show up.
+     */
+    private static class FakeGraph implements TensorFlowClassifier.InferenceGraph {
+
+        private final boolean mSingleOnly;
+        private final Map<String, FloatBuffer> mInputs = new HashMap<>();
+        private final Map<String, Long> mBatches = new HashMap<>();
+        final List<Integer> mRunBatches = new ArrayList<>();
+
+        FakeGraph(boolean singleOnly) {
+            mSingleOnly = singleOnly;
+        }
+
+        @Override
+        public void feed(String inputName, FloatBuffer src, long... dims) {
+            assertEquals(dims[0] * dims[1] * dims[2] * dims[3], src.remaining());
+            mInputs.put(inputName, src.duplicate());
+            mBatches.put(inputName, dims[0]);
+        }
+
+        @Override
+        public void run(String[] outputNames, boolean enableStats) {
+            final long batch = mBatches.get(RIGHT_INPUTS[0]);
+            mRunBatches.add((int) batch);
+            // 입력 크기가 1 로 고정된 graph 처럼
+            if (mSingleOnly && batch > 1) {
+                throw new IllegalArgumentException("Incompatible shapes: [" + batch + "] vs [1]");
+            }
+        }
+
+        @Override
+        public void fetch(String outputName, FloatBuffer dst) {
+            final boolean right = outputName.equals(OUTPUTS[0]);
+            final FloatBuffer input = mInputs.get(right ? RIGHT_INPUTS[0] : LEFT_INPUTS[0]);
+            final int batch = (int) (long) mBatches.get(right ? RIGHT_INPUTS[0] : LEFT_INPUTS[0]);
+            final int size = WIDTHS[0] * HEIGHTS[0];
+            for (int n = 0; n < batch; n++) {
+                float sum = 0;
+                for (int k = 0; k < size; k++) {
+                    sum += input.get(input.position() + n * size + k);
+                }
+                final float mean = sum / size;
+                for (int c = 0; c < C; c++) {
+                    dst.put(n * C + c, right ? mean * (c + 1) : mean * mean);
+                }
+            }
+        }
+    }
+}
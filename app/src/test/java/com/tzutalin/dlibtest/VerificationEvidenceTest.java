@@ -0,0 +1,113 @@
+package com.tzutalin.dlibtest;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Status transitions of {@link VerificationEvidence} with the default limits:
+ * a margin of 3 (about ln 20) and a budget of 8 pairs.
+ */
+public class VerificationEvidenceTest {
+
+    private final VerificationEvidence mEvidence = new VerificationEvidence(4);
+
+    @Test
+    public void startsPending() {
+        assertEquals(VerificationEvidence.PENDING, mEvidence.getStatus());
+        assertEquals(-1, mEvidence.getBestClass());
+        assertEquals(0, mEvidence.getCount());
+    }
+
+    @Test
+    public void oneClearPairDecides() {
+        // 0.96 / 0.04 = 24 > 20
+        assertEquals(VerificationEvidence.DECIDED, mEvidence.add(new float[]{0.01f, 0.96f, 0.04f, 0f}));
+        assertEquals(1, mEvidence.getBestClass());
+        assertEquals(1, mEvidence.getCount());
+        assertEquals(Math.log(24), mEvidence.getMargin(), 1e-4);
+    }
+
+    @Test
+    public void pairBelowTheMarginStaysPendingUntilTheNextAgrees() {
+        // 0.95 / 0.05 = 19 < 20
+        final float[] scores = {0.95f, 0.05f, 0f, 0f};
+        assertEquals(VerificationEvidence.PENDING, mEvidence.add(scores));
+        assertEquals(0, mEvidence.getBestClass());
+        assertEquals(Math.log(19), mEvidence.getMargin(), 1e-4);
+
+        assertEquals(VerificationEvidence.DECIDED, mEvidence.add(scores));
+        assertEquals(2 * Math.log(19), mEvidence.getMargin(), 1e-4);
+        assertEquals(2, mEvidence.getCount());
+    }
+
+    @Test
+    public void failsWhenTheBudgetRunsOut() {
+        // 두 클래스가 번갈아 조금씩 앞서면 결정이 나지 않는다
+        final float[] first = {0.6f, 0.4f, 0f, 0f};
+        final float[] second = {0.4f, 0.6f, 0f, 0f};
+        for (int i = 0; i < VerificationEvidence.DEFAULT_MAX_PAIRS - 1; i++) {
+            assertEquals(VerificationEvidence.PENDING, mEvidence.add(i % 2 == 0 ? first : second));
+        }
+        assertEquals(VerificationEvidence.FAILED, mEvidence.add(second));
+        assertEquals(VerificationEvidence.DEFAULT_MAX_PAIRS, mEvidence.getCount());
+    }
+
+    @Test
+    public void ignoresPairsAfterTheOutcome() {
+        mEvidence.add(new float[]{0f, 0f, 1f, 0f});
+        assertEquals(VerificationEvidence.DECIDED, mEvidence.getStatus());
+        final float margin = mEvidence.getMargin();
+
+        assertEquals(VerificationEvidence.DECIDED, mEvidence.add(new float[]{1f, 0f, 0f, 0f}));
+        assertEquals(2, mEvidence.getBestClass());
+        assertEquals(1, mEvidence.getCount());
+        assertEquals(margin, mEvidence.getMargin(), 0f);
+    }
+
+    @Test
+    public void clampsZeroProbabilities() {
+        // 확률 0 은 1e-4 로 잘라 margin 이 유한하다
+        mEvidence.add(new float[]{0f, 0f, 1f, 0f});
+        assertEquals(-Math.log(1e-4), mEvidence.getMargin(), 1e-3);
+    }
+
+    @Test
+    public void normalizesSummedScores() {
+        // 왼쪽 + 오른쪽 softmax 합 (합계 2) 도 그대로 받는다
+        final VerificationEvidence normalized = new VerificationEvidence(4);
+        normalized.add(new float[]{0.1f, 0.2f, 0.3f, 0.4f});
+        mEvidence.add(new float[]{0.2f, 0.4f, 0.6f, 0.8f});
+        assertEquals(normalized.getMargin(), mEvidence.getMargin(), 1e-6f);
+        assertEquals(3, mEvidence.getBestClass());
+    }
+
+    @Test
+    public void ignoresEmptyScores() {
+        assertEquals(VerificationEvidence.PENDING, mEvidence.add(new float[4]));
+        assertEquals(0, mEvidence.getCount());
+    }
+
+    @Test
+    public void customLimits() {
+        mEvidence.setLimits(1f, 2);
+        // ln(0.6 / 0.4) = 0.41
+        assertEquals(VerificationEvidence.PENDING, mEvidence.add(new float[]{0.6f, 0.4f, 0f, 0f}));
+        assertEquals(VerificationEvidence.FAILED, mEvidence.add(new float[]{0.6f, 0.4f, 0f, 0f}));
+        assertTrue(mEvidence.getMargin() < 1f);
+    }
+
+    @Test
+    public void resetStartsOver() {
+        mEvidence.add(new float[]{0f, 1f, 0f, 0f});
+        mEvidence.reset();
+        startsPending();
+        assertEquals(VerificationEvidence.PENDING, mEvidence.add(new float[]{0.95f, 0.05f, 0f, 0f}));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsAnEmptyBudget() {
+        mEvidence.setLimits(3f, 0);
+    }
+}
@@ -0,0 +1,92 @@
+package com.tzutalin.dlib;
+
+/**
+ * Computes the eye crop rectangles from the 68-point landmarks.
+ * Each eye box spans the eye corners and lids and is then padded around the eye
+ * (x_scope1 / x_scope2 horizontally, y_scope vertically) to the 3:1 shape the
+ * classifier expects. Pure Java and allocation free, so it can run per frame.
+ */
+public final class EyeRegionCalculator {
+
+    public static final int DEFAULT_MIN_SIZE = 8;
+    public static final float DEFAULT_MIN_RETAINED = 0.9f;
+
+    private int mMinSize = DEFAULT_MIN_SIZE;
+    private float mMinRetained = DEFAULT_MIN_RETAINED;
+
+    /**
+     * @param minSize smallest width and height of a valid box after clamping
+     */
+    public void setMinSize(int minSize) {
+        mMinSize = minSize;
+    }
+
+    /**
+     * @param minRetained smallest fraction of the padded box area that must remain inside the frame
+     */
+    public void setMinRetained(float minRetained) {
+        mMinRetained = minRetained;
+    }
+
+    /**
+     * Computes both eye boxes, clamps them to the frame and flags them.
+     * @return true if both boxes are valid
+     */
+    public boolean compute(VisionDetRet det, int frameWidth, int frameHeight, EyeRegions out) {
+        if (!computeRaw(det, out)) {
+            return false;
+        }
+        clamp(out.right, frameWidth, frameHeight);
+        clamp(out.left, frameWidth, frameHeight);
+        return out.isValid();
+    }
+
+    /**
+     * Computes both padded eye boxes without clamping them to a frame.
+     * Boxes are flagged valid when they are not empty.
+     * @return false if {@code det} has no eye landmarks
+     */
+    public static boolean computeRaw(VisionDetRet det, EyeRegions out) {
+        if (!det.hasEyeLandmarks()) {
+            out.right.valid = false;
+            out.left.valid = false;
+            return false;
+        }
+        eyeBox(det, VisionDetRet.RIGHT_EYE_START, false, out.right);
+        eyeBox(det, VisionDetRet.LEFT_EYE_START, true, out.left);
+        return true;
+    }
+
+    // points: 0 outer/inner corner, 1-2 upper lid, 3 other corner, 4-5 lower lid
+    private static void eyeBox(VisionDetRet det, int start, boolean leftEye, EyeRegions.Box box) {
+        final int startX = det.x(start);
+        final int endX = det.x(start + 3);
+        final int startY = Math.min(det.y(start + 1), det.y(start + 2));
+        final int endY = Math.max(det.y(start + 4), det.y(start + 5));
+
+        final int h = endY - startY;
+        final int w = endX - startX;
+        // 범위 재정의: 눈꼬리 쪽으로 더 넓게 (오른쪽 눈은 왼쪽, 왼쪽 눈은 오른쪽)
+        final int x_scope1 = (int) ((3 * h - w) / 2 + 3 * h * 0.4);
+        final int x_scope2 = (int) ((3 * h - w) / 2 + 3 * h * 0.6);
+        final int y_scope = (int) (h * 0.9);
+
+        if (leftEye) {
+            box.set(startX - x_scope1, startY - y_scope, endX + x_scope2, endY + y_scope);
+        } else {
+            box.set(startX - x_scope2, startY - y_scope, endX + x_scope1, endY + y_scope);
+        }
+        box.valid = box.width() > 0 && box.height() > 0;
+    }
+
+    private void clamp(EyeRegions.Box box, int frameWidth, int frameHeight) {
+        if (!box.valid) {
+            return;
+        }
+        final long area = (long) box.width() * box.height();
+        box.set(Math.max(0, box.left), Math.max(0, box.top),
+                Math.min(frameWidth, box.right), Math.min(frameHeight, box.bottom));
+        box.valid = box.width() >= mMinSize && box.height() >= mMinSize
+                && (long) box.width() * box.height() >= area * mMinRetained;
+    }
+}
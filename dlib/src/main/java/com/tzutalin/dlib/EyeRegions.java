@@ -0,0 +1,44 @@
+package com.tzutalin.dlib;
+
+/**
+ * Reusable result of {@link EyeRegionCalculator}: the crop rectangle of each eye.
+ * Coordinates are in pixels of the frame the landmarks belong to, right/bottom exclusive.
+ */
+public final class EyeRegions {
+
+    public static final class Box {
+        public int left;
+        public int top;
+        public int right;
+        public int bottom;
+        /** false if the box is too small or lost too much of its area to clamping */
+        public boolean valid;
+
+        public int width() {
+            return right - left;
+        }
+
+        public int height() {
+            return bottom - top;
+        }
+
+        void set(int left, int top, int right, int bottom) {
+            this.left = left;
+            this.top = top;
+            this.right = right;
+            this.bottom = bottom;
+        }
+    }
+
+    /** 오른쪽 눈 (landmarks 36 ~ 41) */
+    public final Box right = new Box();
+    /** 왼쪽 눈 (landmarks 42 ~ 47) */
+    public final Box left = new Box();
+
+    /**
+     * @return true if both boxes are valid
+     */
+    public boolean isValid() {
+        return right.valid && left.valid;
+    }
+}
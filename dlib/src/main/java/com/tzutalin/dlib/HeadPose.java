@@ -0,0 +1,21 @@
+package com.tzutalin.dlib;
+
+/**
+ * Reusable head pose estimate in degrees, filled by {@link HeadPoseEstimator}.
+ * Yaw is positive when the nose points to the right of the image, pitch when the face
+ * looks up, roll when the eye line rotates clockwise in the image.
+ */
+public final class HeadPose {
+    public float yaw;
+    public float pitch;
+    public float roll;
+    /** false if the landmarks needed for the estimate are missing or degenerate */
+    public boolean valid;
+
+    public void set(HeadPose other) {
+        yaw = other.yaw;
+        pitch = other.pitch;
+        roll = other.roll;
+        valid = other.valid;
+    }
+}
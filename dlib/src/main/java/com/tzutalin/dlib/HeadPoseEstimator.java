@@ -0,0 +1,76 @@
+package com.tzutalin.dlib;
+
+/**
+ * Coarse head pose from the 68-point landmarks, without a 3D model fit.
+ * <ul>
+ * <li>roll: angle of the line through both eye centers</li>
+ * <li>yaw: horizontal offset of the nose tip (30) from the eye midpoint, relative to the
+ *     interocular distance, in the de-rolled face frame</li>
+ * <li>pitch: vertical drop from the eye line to the nose tip, relative to the interocular
+ *     distance, compared with an average frontal face</li>
+ * </ul>
+ * Yaw and pitch assume an average face (nose tip about half an interocular distance in
+ * front of the eyes and 0.75 of it below them), so they are good for gating, not for
+ * measurement. Pure Java and allocation free.
+ */
+public final class HeadPoseEstimator {
+
+    private static final int NOSE_TIP = 30;
+    // average face, in interocular distances
+    private static final double NOSE_DEPTH = 0.5;
+    private static final double NOSE_DROP = 0.75;
+
+    private HeadPoseEstimator() {
+    }
+
+    /**
+     * @return true if {@code out} holds a valid estimate
+     */
+    public static boolean estimate(VisionDetRet det, HeadPose out) {
+        out.valid = false;
+        if (!det.hasEyeLandmarks()) {
+            return false;
+        }
+
+        double rightX = 0;
+        double rightY = 0;
+        double leftX = 0;
+        double leftY = 0;
+        for (int i = 0; i < VisionDetRet.EYE_POINTS; i++) {
+            rightX += det.rightEyeX(i);
+            rightY += det.rightEyeY(i);
+            leftX += det.leftEyeX(i);
+            leftY += det.leftEyeY(i);
+        }
+        rightX /= VisionDetRet.EYE_POINTS;
+        rightY /= VisionDetRet.EYE_POINTS;
+        leftX /= VisionDetRet.EYE_POINTS;
+        leftY /= VisionDetRet.EYE_POINTS;
+
+        final double eyeDx = leftX - rightX;
+        final double eyeDy = leftY - rightY;
+        final double interocular = Math.sqrt(eyeDx * eyeDx + eyeDy * eyeDy);
+        if (interocular < 1) {
+            return false;
+        }
+        // unit vector along the eye line and its normal pointing down the face
+        final double ux = eyeDx / interocular;
+        final double uy = eyeDy / interocular;
+        final double vx = -uy;
+        final double vy = ux;
+
+        final double noseX = det.x(NOSE_TIP) - (rightX + leftX) / 2;
+        final double noseY = det.y(NOSE_TIP) - (rightY + leftY) / 2;
+        final double across = (noseX * ux + noseY * uy) / interocular;
+        final double down = (noseX * vx + noseY * vy) / interocular;
+
+        out.roll = (float) Math.toDegrees(Math.atan2(uy, ux));
+        out.yaw = (float) Math.toDegrees(Math.atan2(across, NOSE_DEPTH));
+        // down = NOSE_DROP * cos(pitch) - NOSE_DEPTH * sin(pitch)
+        final double norm = Math.sqrt(NOSE_DROP * NOSE_DROP + NOSE_DEPTH * NOSE_DEPTH);
+        final double cos = Math.max(-1, Math.min(1, down / norm));
+        out.pitch = (float) Math.toDegrees(Math.acos(cos) - Math.atan2(NOSE_DEPTH, NOSE_DROP));
+        out.valid = true;
+        return true;
+    }
+}
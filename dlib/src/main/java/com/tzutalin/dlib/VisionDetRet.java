@@ -5,6 +5,7 @@ import android.graphics.Point;
 import android.util.Log;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 
 
 
@@ -12,6 +13,15 @@ import java.util.ArrayList;
  * A VisionDetRet contains all the information identifying the location and confidence value of the detected object in a bitmap.
  */
 public final class VisionDetRet {
+    /** Number of points of the 68-point shape predictor */
+    public static final int MAX_LANDMARKS = 68;
+    /** First landmark of the right eye (36 ~ 41) */
+    public static final int RIGHT_EYE_START = 36;
+    /** First landmark of the left eye (42 ~ 47) */
+    public static final int LEFT_EYE_START = 42;
+    /** Landmarks per eye */
+    public static final int EYE_POINTS = 6;
+
     private String mLabel;
     private float mConfidence;
     private int mLeft;
@@ -37,7 +47,11 @@ public final class VisionDetRet {
 
 
 
-    private ArrayList<Point> mLandmarkPoints = new ArrayList<>();
+    // x0, y0, x1, y1, ...
+    private int[] mLandmarks = new int[2 * MAX_LANDMARKS];
+    private int mLandmarkCount;
+    // built on demand by getFaceLandmarks()
+    private ArrayList<Point> mLandmarkPoints;
 
 
 
@@ -184,16 +198,114 @@ public final class VisionDetRet {
      * @return true if adding landmark successfully
      */
     public boolean addLandmark(int x, int y) {
-        return mLandmarkPoints.add(new Point(x, y));
+        if (2 * mLandmarkCount == mLandmarks.length) {
+            mLandmarks = Arrays.copyOf(mLandmarks, 2 * mLandmarks.length);
+        }
+        mLandmarks[2 * mLandmarkCount] = x;
+        mLandmarks[2 * mLandmarkCount + 1] = y;
+        mLandmarkCount++;
+        mLandmarkPoints = null;
+        return true;
+    }
+
+    /**
+     * @return The number of landmarks
+     */
+    public int getLandmarkCount() {
+        return mLandmarkCount;
+    }
+
+    /**
+     * @param i landmark index
+     * @return The X coordinate of landmark i
+     */
+    public int x(int i) {
+        return mLandmarks[2 * checkLandmark(i)];
     }
 
     /**
-     * Return the list of landmark points
+     * @param i landmark index
+     * @return The Y coordinate of landmark i
+     */
+    public int y(int i) {
+        return mLandmarks[2 * checkLandmark(i) + 1];
+    }
+
+    /**
+     * @return true if the eye landmarks (36 ~ 47) are present
+     */
+    public boolean hasEyeLandmarks() {
+        return mLandmarkCount >= LEFT_EYE_START + EYE_POINTS;
+    }
+
+    /**
+     * @param i point of the right eye, 0 ~ 5 (landmarks 36 ~ 41)
+     */
+    public int rightEyeX(int i) {
+        return x(RIGHT_EYE_START + checkEyePoint(i));
+    }
+
+    public int rightEyeY(int i) {
+        return y(RIGHT_EYE_START + checkEyePoint(i));
+    }
+
+    /**
+     * @param i point of the left eye, 0 ~ 5 (landmarks 42 ~ 47)
+     */
+    public int leftEyeX(int i) {
+        return x(LEFT_EYE_START + checkEyePoint(i));
+    }
+
+    public int leftEyeY(int i) {
+        return y(LEFT_EYE_START + checkEyePoint(i));
+    }
+
+    /**
+     * Return the list of landmark points. The list is built from the packed landmarks on
+     * first use; prefer {@link #x(int)} and {@link #y(int)} on hot paths.
+     * Changes made to the returned points are not written back.
      * @return ArrayList of android.graphics.Point
      */
     public ArrayList<Point> getFaceLandmarks() {
+        if (mLandmarkPoints == null) {
+            mLandmarkPoints = new ArrayList<>(mLandmarkCount);
+            for (int i = 0; i < mLandmarkCount; i++) {
+                mLandmarkPoints.add(new Point(mLandmarks[2 * i], mLandmarks[2 * i + 1]));
+            }
+        }
         return mLandmarkPoints;
     }
 
+    /**
+     * Copies unclamped eye boxes into the legacy mStart/mEnd/mWidth/mHight fields.
+     */
+    void setEyeRegions(EyeRegions regions) {
+        mStartRightX = regions.right.left;
+        mStartRightY = regions.right.top;
+        mEndRightX = regions.right.right;
+        mEndRightY = regions.right.bottom;
+        mWidthRight = regions.right.width();
+        mHightRight = regions.right.height();
+
+        mStartLeftX = regions.left.left;
+        mStartLeftY = regions.left.top;
+        mEndLeftX = regions.left.right;
+        mEndLeftY = regions.left.bottom;
+        mWidthLeft = regions.left.width();
+        mHightLeft = regions.left.height();
+    }
 
+    private int checkLandmark(int i) {
+        if (i < 0 || i >= mLandmarkCount) {
+            throw new IndexOutOfBoundsException("landmark " + i + " of " + mLandmarkCount);
+        }
+        return i;
+    }
+
+    private static int checkEyePoint(int i) {
+        if (i < 0 || i >= EYE_POINTS) {
+            throw new IndexOutOfBoundsException("eye point " + i);
+        }
+        return i;
+    }
 }
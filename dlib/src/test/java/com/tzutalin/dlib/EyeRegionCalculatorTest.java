@@ -0,0 +1,167 @@
+package com.tzutalin.dlib;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * {@link EyeRegionCalculator} on synthetic 68-point landmark sets.
+ * <p>
+ * The test eye spans 30px between its corners and 11px between its lids, which pads to
+ * 20px on the outer side, 14px on the inner side and 9px above and below.
+ */
+public class EyeRegionCalculatorTest {
+
+    private static final int FRAME = 200;
+
+    private final EyeRegionCalculator mCalculator = new EyeRegionCalculator();
+    private final EyeRegions mRegions = new EyeRegions();
+
+    @Test
+    public void padsBothEyesInsideTheFrame() {
+        final VisionDetRet det = face(60, 100, 120, 100);
+
+        assertTrue(mCalculator.compute(det, FRAME, FRAME, mRegions));
+        // 오른쪽 눈: 바깥쪽 끝 (36) 이 왼쪽, 넓은 여백이 그쪽으로
+        assertBox(mRegions.right, 60 - 20, 95 - 9, 90 + 14, 106 + 9);
+        // 왼쪽 눈: 바깥쪽 끝 (45) 이 오른쪽
+        assertBox(mRegions.left, 120 - 14, 95 - 9, 150 + 20, 106 + 9);
+        assertTrue(mRegions.right.valid);
+        assertTrue(mRegions.left.valid);
+    }
+
+    @Test
+    public void leftEyeBottomUsesTheLowerOfLandmarks46And47() {
+        final int[] points = facePoints(60, 100, 120, 100);
+        // 아래 눈꺼풀: 47 이 46 보다 아래, 그 다음 반대로
+        set(points, 46, 140, 104);
+        set(points, 47, 130, 106);
+        assertTrue(mCalculator.compute(build(points), FRAME, FRAME, mRegions));
+        final int bottom = mRegions.left.bottom;
+
+        set(points, 46, 140, 106);
+        set(points, 47, 130, 104);
+        assertTrue(mCalculator.compute(build(points), FRAME, FRAME, mRegions));
+        assertEquals(bottom, mRegions.left.bottom);
+        assertEquals(106 + 9, bottom);
+    }
+
+    @Test
+    public void clampsBoxesAtTheFrameEdges() {
+        // 오른쪽 눈 box 가 frame 왼쪽으로 2px 넘침: 64 열 중 2 열 잘림
+        final VisionDetRet det = face(18, 100, 120, 100);
+
+        assertTrue(mCalculator.compute(det, FRAME, FRAME, mRegions));
+        assertEquals(0, mRegions.right.left);
+        assertEquals(48 + 14, mRegions.right.right);
+        assertTrue(mRegions.right.valid);
+
+        // 왼쪽 눈 box 가 frame 아래로 5px 넘침: 29 행 중 5 행 잘림
+        final VisionDetRet low = face(60, 100, 120, 190);
+        assertFalse(mCalculator.compute(low, FRAME, FRAME, mRegions));
+        assertEquals(FRAME, mRegions.left.bottom);
+        assertFalse(mRegions.left.valid);
+        assertTrue(mRegions.right.valid);
+    }
+
+    @Test
+    public void rejectsBoxesKeepingLessThan90PercentOfTheirArea() {
+        // 64 열 중 7 열 (10.9%) 잘리면 버리고, 5 열 (7.8%) 이면 유지
+        assertFalse(mCalculator.compute(face(13, 100, 120, 100), FRAME, FRAME, mRegions));
+        assertFalse(mRegions.right.valid);
+        assertTrue(mCalculator.compute(face(15, 100, 120, 100), FRAME, FRAME, mRegions));
+        assertTrue(mRegions.right.valid);
+
+        mCalculator.setMinRetained(0.5f);
+        assertTrue(mCalculator.compute(face(13, 100, 120, 100), FRAME, FRAME, mRegions));
+    }
+
+    @Test
+    public void rejectsBoxesSmallerThanTheMinimumSize() {
+        // 2x2 눈: 여백을 붙여도 11x4
+        final int[] points = new int[2 * VisionDetRet.MAX_LANDMARKS];
+        tinyEye(points, VisionDetRet.RIGHT_EYE_START, 60, 100);
+        tinyEye(points, VisionDetRet.LEFT_EYE_START, 120, 100);
+        final VisionDetRet det = build(points);
+
+        assertFalse(mCalculator.compute(det, FRAME, FRAME, mRegions));
+        assertEquals(11, mRegions.right.width());
+        assertEquals(4, mRegions.right.height());
+        assertFalse(mRegions.right.valid);
+
+        mCalculator.setMinSize(4);
+        assertTrue(mCalculator.compute(det, FRAME, FRAME, mRegions));
+    }
+
+    @Test
+    public void failsWithoutEyeLandmarks() {
+        final VisionDetRet det = new VisionDetRet("face", 1f, 0, 0, FRAME, FRAME);
+        for (int i = 0; i < VisionDetRet.LEFT_EYE_START; i++) {
+            det.addLandmark(100, 100);
+        }
+        mRegions.right.valid = true;
+        mRegions.left.valid = true;
+
+        assertFalse(EyeRegionCalculator.computeRaw(det, mRegions));
+        assertFalse(mCalculator.compute(det, FRAME, FRAME, mRegions));
+        assertFalse(mRegions.right.valid);
+        assertFalse(mRegions.left.valid);
+    }
+
+    // right eye outer corner at (rightX, rightY), left eye inner corner at (leftX, leftY)
+    private static VisionDetRet face(int rightX, int rightY, int leftX, int leftY) {
+        return build(facePoints(rightX, rightY, leftX, leftY));
+    }
+
+    // x, y 순서로 68 점, 눈이 아닌 점은 (100, 150)
+    private static int[] facePoints(int rightX, int rightY, int leftX, int leftY) {
+        final int[] points = new int[2 * VisionDetRet.MAX_LANDMARKS];
+        for (int i = 0; i < VisionDetRet.MAX_LANDMARKS; i++) {
+            set(points, i, 100, 150);
+        }
+        eye(points, VisionDetRet.RIGHT_EYE_START, rightX, rightY);
+        eye(points, VisionDetRet.LEFT_EYE_START, leftX, leftY);
+        return points;
+    }
+
+    // 바깥쪽 끝, 위 눈꺼풀 두 점, 안쪽 끝, 아래 눈꺼풀 두 점 (dlib 순서)
+    private static void eye(int[] points, int start, int x, int y) {
+        set(points, start, x, y);
+        set(points, start + 1, x + 10, y - 5);
+        set(points, start + 2, x + 20, y - 5);
+        set(points, start + 3, x + 30, y);
+        set(points, start + 4, x + 20, y + 4);
+        set(points, start + 5, x + 10, y + 6);
+    }
+
+    private static void tinyEye(int[] points, int start, int x, int y) {
+        set(points, start, x, y);
+        set(points, start + 1, x + 1, y - 1);
+        set(points, start + 2, x + 1, y - 1);
+        set(points, start + 3, x + 2, y);
+        set(points, start + 4, x + 1, y + 1);
+        set(points, start + 5, x + 1, y + 1);
+    }
+
+    private static void set(int[] points, int i, int x, int y) {
+        points[2 * i] = x;
+        points[2 * i + 1] = y;
+    }
+
+    private static VisionDetRet build(int[] points) {
+        final VisionDetRet det = new VisionDetRet("face", 1f, 0, 0, FRAME, FRAME);
+        for (int i = 0; i < points.length / 2; i++) {
+            det.addLandmark(points[2 * i], points[2 * i + 1]);
+        }
+        return det;
+    }
+
+    private static void assertBox(EyeRegions.Box box, int left, int top, int right, int bottom) {
+        assertEquals("left", left, box.left);
+        assertEquals("top", top, box.top);
+        assertEquals("right", right, box.right);
+        assertEquals("bottom", bottom, box.bottom);
+    }
+}
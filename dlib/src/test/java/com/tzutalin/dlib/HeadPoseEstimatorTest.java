@@ -0,0 +1,104 @@
+package com.tzutalin.dlib;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * {@link HeadPoseEstimator} on synthetic landmarks with eye centers 100px apart.
+ * <p>
+ * A frontal face has its nose tip 75px below the eye midpoint; the expected angles follow
+ * from the average-face model: yaw = atan(across / 0.5) and
+ * pitch = acos(down / |(0.75, 0.5)|) - atan(0.5 / 0.75), in interocular distances.
+ */
+public class HeadPoseEstimatorTest {
+
+    private static final float EPSILON = 0.01f;
+
+    private final HeadPose mPose = new HeadPose();
+
+    @Test
+    public void frontalFaceIsZero() {
+        assertTrue(HeadPoseEstimator.estimate(face(100, 100, 200, 100, 150, 175), mPose));
+        assertTrue(mPose.valid);
+        assertPose(0, 0, 0);
+    }
+
+    @Test
+    public void noseToTheRightIsPositiveYaw() {
+        // across = 30 / 100, atan(0.3 / 0.5)
+        assertTrue(HeadPoseEstimator.estimate(face(100, 100, 200, 100, 180, 175), mPose));
+        assertPose(30.96f, 0, 0);
+
+        assertTrue(HeadPoseEstimator.estimate(face(100, 100, 200, 100, 120, 175), mPose));
+        assertPose(-30.96f, 0, 0);
+    }
+
+    @Test
+    public void noseCloserToTheEyesIsLookingUp() {
+        // down = 0.5: acos(0.5 / 0.9014) - 33.69
+        assertTrue(HeadPoseEstimator.estimate(face(100, 100, 200, 100, 150, 150), mPose));
+        assertPose(0, 22.62f, 0);
+    }
+
+    @Test
+    public void noseFurtherFromTheEyesIsLookingDown() {
+        // down = 1.0 은 모델의 최대값 (0.9014) 을 넘어서 acos(1) 로 잘린다
+        assertTrue(HeadPoseEstimator.estimate(face(100, 100, 200, 100, 150, 200), mPose));
+        assertPose(0, -33.69f, 0);
+    }
+
+    @Test
+    public void clockwiseEyeLineIsPositiveRoll() {
+        // 눈 선이 45 도 기울고, 코는 그 기울어진 얼굴에서 정면 위치
+        assertTrue(HeadPoseEstimator.estimate(face(100, 100, 200, 200, 75, 225), mPose));
+        assertPose(0, 0, 45);
+
+        assertTrue(HeadPoseEstimator.estimate(face(100, 200, 200, 100, 225, 225), mPose));
+        assertPose(0, 0, -45);
+    }
+
+    @Test
+    public void failsWithoutEyeLandmarks() {
+        final VisionDetRet det = new VisionDetRet("face", 1f, 0, 0, 300, 300);
+        for (int i = 0; i < VisionDetRet.LEFT_EYE_START; i++) {
+            det.addLandmark(100, 100);
+        }
+        mPose.valid = true;
+        assertFalse(HeadPoseEstimator.estimate(det, mPose));
+        assertFalse(mPose.valid);
+    }
+
+    @Test
+    public void failsWhenTheEyesCoincide() {
+        assertFalse(HeadPoseEstimator.estimate(face(100, 100, 100, 100, 100, 175), mPose));
+        assertFalse(mPose.valid);
+    }
+
+    // 눈 점 6 개는 중심 둘레에 대칭으로 놓는다, 나머지 점은 코 끝
+    private static VisionDetRet face(int rightX, int rightY, int leftX, int leftY, int noseX, int noseY) {
+        final int[] dx = {-15, -5, 5, 15, 5, -5};
+        final int[] dy = {0, -5, -5, 0, 5, 5};
+        final VisionDetRet det = new VisionDetRet("face", 1f, 0, 0, 300, 300);
+        for (int i = 0; i < VisionDetRet.MAX_LANDMARKS; i++) {
+            if (i >= VisionDetRet.RIGHT_EYE_START && i < VisionDetRet.RIGHT_EYE_START + VisionDetRet.EYE_POINTS) {
+                final int k = i - VisionDetRet.RIGHT_EYE_START;
+                det.addLandmark(rightX + dx[k], rightY + dy[k]);
+            } else if (i >= VisionDetRet.LEFT_EYE_START && i < VisionDetRet.LEFT_EYE_START + VisionDetRet.EYE_POINTS) {
+                final int k = i - VisionDetRet.LEFT_EYE_START;
+                det.addLandmark(leftX + dx[k], leftY + dy[k]);
+            } else {
+                det.addLandmark(noseX, noseY);
+            }
+        }
+        return det;
+    }
+
+    private void assertPose(float yaw, float pitch, float roll) {
+        assertEquals("yaw", yaw, mPose.yaw, EPSILON);
+        assertEquals("pitch", pitch, mPose.pitch, EPSILON);
+        assertEquals("roll", roll, mPose.roll, EPSILON);
+    }
+}